@@ -3,28 +3,38 @@ package me.devziyad.unipoolbackend.admin;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import me.devziyad.unipoolbackend.auth.AuthService;
-import me.devziyad.unipoolbackend.booking.Booking;
 import me.devziyad.unipoolbackend.booking.BookingRepository;
 import me.devziyad.unipoolbackend.booking.BookingService;
 import me.devziyad.unipoolbackend.booking.dto.BookingResponse;
-import me.devziyad.unipoolbackend.common.BookingStatus;
 import me.devziyad.unipoolbackend.common.Role;
 import me.devziyad.unipoolbackend.exception.ForbiddenException;
 import me.devziyad.unipoolbackend.payment.PaymentRepository;
 import me.devziyad.unipoolbackend.payment.PaymentService;
 import me.devziyad.unipoolbackend.payment.dto.PaymentResponse;
-import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideCorridorIndex;
 import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.ride.RideSearchCache;
 import me.devziyad.unipoolbackend.ride.RideService;
+import me.devziyad.unipoolbackend.ride.RideSpatialIndex;
 import me.devziyad.unipoolbackend.ride.dto.RideResponse;
-import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.ride.dto.SearchCacheStatsResponse;
 import me.devziyad.unipoolbackend.user.UserService;
 import me.devziyad.unipoolbackend.user.dto.UserResponse;
 import me.devziyad.unipoolbackend.user.dto.UploadImageRequest;
 import me.devziyad.unipoolbackend.user.dto.VerifyUserRequest;
 import me.devziyad.unipoolbackend.rating.RatingRepository;
+import me.devziyad.unipoolbackend.notification.NotificationOutbox;
+import me.devziyad.unipoolbackend.notification.NotificationPreferenceCache;
 import me.devziyad.unipoolbackend.notification.NotificationRepository;
+import me.devziyad.unipoolbackend.notification.NotificationStreamRegistry;
+import me.devziyad.unipoolbackend.notification.UnreadNotificationCounter;
 import me.devziyad.unipoolbackend.tracking.GpsTrackingRepository;
+import me.devziyad.unipoolbackend.tracking.GpsTraceChunkRepository;
+import me.devziyad.unipoolbackend.tracking.LiveLocationStore;
+import me.devziyad.unipoolbackend.tracking.RideEtaTracker;
+import me.devziyad.unipoolbackend.tracking.RideLocationStreamRegistry;
+import me.devziyad.unipoolbackend.tracking.TraceRecorder;
+import me.devziyad.unipoolbackend.tracking.dto.TraceStorageStatsResponse;
 import me.devziyad.unipoolbackend.route.RouteRepository;
 import me.devziyad.unipoolbackend.location.LocationRepository;
 import me.devziyad.unipoolbackend.vehicle.VehicleRepository;
@@ -37,6 +47,8 @@ import me.devziyad.unipoolbackend.user.UserSettingsRepository;
 import me.devziyad.unipoolbackend.moderation.UserReportRepository;
 import me.devziyad.unipoolbackend.security.TokenBlacklistRepository;
 import me.devziyad.unipoolbackend.security.FailedLoginAttemptRepository;
+import me.devziyad.unipoolbackend.idempotency.IdempotencyRecordRepository;
+import me.devziyad.unipoolbackend.idempotency.IdempotencyStore;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
@@ -63,7 +75,16 @@ public class AdminController {
     private final PaymentRepository paymentRepository;
     private final RatingRepository ratingRepository;
     private final NotificationRepository notificationRepository;
+    private final NotificationOutbox notificationOutbox;
+    private final NotificationStreamRegistry notificationStreamRegistry;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final NotificationPreferenceCache notificationPreferenceCache;
     private final GpsTrackingRepository gpsTrackingRepository;
+    private final LiveLocationStore liveLocationStore;
+    private final RideLocationStreamRegistry rideLocationStreamRegistry;
+    private final RideEtaTracker rideEtaTracker;
+    private final TraceRecorder traceRecorder;
+    private final GpsTraceChunkRepository gpsTraceChunkRepository;
     private final RouteRepository routeRepository;
     private final LocationRepository locationRepository;
     private final VehicleRepository vehicleRepository;
@@ -74,6 +95,11 @@ public class AdminController {
     private final UserReportRepository userReportRepository;
     private final TokenBlacklistRepository tokenBlacklistRepository;
     private final FailedLoginAttemptRepository failedLoginAttemptRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final IdempotencyStore idempotencyStore;
+    private final RideSpatialIndex rideSpatialIndex;
+    private final RideCorridorIndex rideCorridorIndex;
+    private final RideSearchCache rideSearchCache;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -197,27 +223,24 @@ public class AdminController {
     }
 
     @PutMapping("/rides/{id}/complete")
-    @Transactional
     public ResponseEntity<Void> forceCompleteRide(@PathVariable Long id) {
         checkAdmin();
-        Ride ride = rideRepository.findById(id)
-                .orElseThrow(() -> new me.devziyad.unipoolbackend.exception.ResourceNotFoundException("Ride not found"));
-        ride.setStatus(RideStatus.COMPLETED);
-        rideRepository.save(ride);
-        
-        // Mark all CONFIRMED bookings as COMPLETED
-        List<Booking> confirmedBookings = bookingRepository.findByRideId(ride.getId()).stream()
-                .filter(booking -> booking.getStatus() == BookingStatus.CONFIRMED)
-                .collect(Collectors.toList());
-        
-        for (Booking booking : confirmedBookings) {
-            booking.setStatus(BookingStatus.COMPLETED);
-        }
-        bookingRepository.saveAll(confirmedBookings);
-        
+        rideService.forceCompleteRide(id);
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/rides/search-cache")
+    public ResponseEntity<@NonNull SearchCacheStatsResponse> getSearchCacheStats() {
+        checkAdmin();
+        return ResponseEntity.ok(rideSearchCache.stats());
+    }
+
+    @GetMapping("/tracking/trace-stats")
+    public ResponseEntity<@NonNull TraceStorageStatsResponse> getTraceStorageStats() {
+        checkAdmin();
+        return ResponseEntity.ok(traceRecorder.stats(null));
+    }
+
     @GetMapping("/bookings")
     public ResponseEntity<@NonNull List<@NonNull BookingResponse>> getAllBookings() {
         checkAdmin();
@@ -256,7 +279,12 @@ public class AdminController {
         // Delete in order to respect foreign key constraints
         // Order matters: delete entities with foreign keys to other entities first
         // 1. Entities that don't depend on users (or have nullable FKs)
+        liveLocationStore.clear();
+        rideLocationStreamRegistry.closeAll();
+        rideEtaTracker.clear();
         gpsTrackingRepository.deleteAll();
+        traceRecorder.clear();
+        gpsTraceChunkRepository.deleteAllInBatch();
         
         // 2. Entities that depend on Booking, Ride, and User
         paymentRepository.deleteAll();
@@ -272,13 +300,24 @@ public class AdminController {
         vehicleRepository.deleteAll();
         locationRepository.deleteAll();
         notificationRepository.deleteAll();
+        notificationOutbox.clear();
+        notificationStreamRegistry.closeAll();
+        unreadNotificationCounter.clear();
+        notificationPreferenceCache.clear();
         auditLogRepository.deleteAll();
         failedLoginAttemptRepository.deleteAll();
         tokenBlacklistRepository.deleteAll();
+        idempotencyRecordRepository.deleteAll();
         userSettingsRepository.deleteAll();
         
         // 5. Finally, delete users
         userRepository.deleteAll();
+
+        // Drop in-memory ride state built from the deleted rows
+        rideSpatialIndex.rebuild();
+        rideCorridorIndex.rebuild();
+        rideSearchCache.invalidateAll();
+        idempotencyStore.clear();
         
         // Audit log (this will fail if user is deleted, so we log before deletion)
         // Actually, we can't log after deletion since adminId won't exist
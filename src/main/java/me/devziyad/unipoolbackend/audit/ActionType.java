@@ -16,6 +16,7 @@ public enum ActionType {
     // Booking operations
     BOOKING_CREATE,
     BOOKING_CANCEL,
+    BOOKING_BULK_DECISION,
     
     // Payment operations
     PAYMENT_INITIATE,
@@ -74,4 +74,8 @@ public class Booking {
 
     @Column
     private Instant cancelledAt;
+
+    // Set while the booking is HELD; the seats go back to the ride once it passes
+    @Column
+    private Instant holdExpiresAt;
 }
\ No newline at end of file
@@ -4,10 +4,14 @@ import jakarta.validation.Valid;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import me.devziyad.unipoolbackend.auth.AuthService;
+import me.devziyad.unipoolbackend.booking.dto.BookingCreatedResponse;
 import me.devziyad.unipoolbackend.booking.dto.BookingResponse;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionRequest;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionResponse;
 import me.devziyad.unipoolbackend.booking.dto.CreateBookingRequest;
 import me.devziyad.unipoolbackend.booking.dto.UpdateBookingStatusRequest;
 import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.idempotency.IdempotencyStore;
 import me.devziyad.unipoolbackend.ride.dto.RideResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -23,12 +27,31 @@ public class BookingController {
 
     private final BookingService bookingService;
     private final AuthService authService;
+    private final IdempotencyStore idempotencyStore;
 
     @PostMapping
-    public ResponseEntity<@NonNull RideResponse> create(@Valid @RequestBody CreateBookingRequest request) {
+    public ResponseEntity<@NonNull RideResponse> create(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CreateBookingRequest request) {
         Long riderId = authService.getCurrentUser().getId();
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(bookingService.createBooking(request, riderId));
+        return idempotencyStore.execute(idempotencyKey, riderId, "POST /api/bookings", request, RideResponse.class,
+                () -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(bookingService.createBooking(request, riderId)));
+    }
+
+    // ?lean=true: only the new booking, the ride's seat count and its version, sent as ETag too
+    @PostMapping(params = "lean=true")
+    public ResponseEntity<@NonNull BookingCreatedResponse> createLean(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CreateBookingRequest request) {
+        Long riderId = authService.getCurrentUser().getId();
+        return idempotencyStore.execute(idempotencyKey, riderId, "POST /api/bookings?lean=true", request,
+                BookingCreatedResponse.class, () -> {
+                    BookingCreatedResponse response = bookingService.createBookingLean(request, riderId);
+                    return ResponseEntity.status(HttpStatus.CREATED)
+                            .eTag(String.valueOf(response.getRideVersion()))
+                            .body(response);
+                });
     }
 
     @GetMapping("/{id}")
@@ -53,6 +76,14 @@ public class BookingController {
         return ResponseEntity.ok(bookingService.getBookingsForRide(rideId, driverId));
     }
 
+    @PostMapping("/ride/{rideId}/decisions")
+    public ResponseEntity<@NonNull BulkBookingDecisionResponse> decideBookings(
+            @PathVariable Long rideId,
+            @Valid @RequestBody BulkBookingDecisionRequest request) {
+        Long driverId = authService.getCurrentUser().getId();
+        return ResponseEntity.ok(bookingService.decideBookings(rideId, driverId, request));
+    }
+
     @PostMapping("/{bookingId}/cancel")
     public ResponseEntity<@NonNull Void> cancelBooking(@PathVariable Long bookingId) {
         Long userId = authService.getCurrentUser().getId();
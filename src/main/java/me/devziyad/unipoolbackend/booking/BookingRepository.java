@@ -5,10 +5,13 @@ import me.devziyad.unipoolbackend.common.BookingStatus;
 import me.devziyad.unipoolbackend.user.User;
 import me.devziyad.unipoolbackend.ride.Ride;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,6 +35,54 @@ public interface BookingRepository extends JpaRepository<@NonNull Booking, @NonN
 
     Optional<Booking> findByRideIdAndRiderId(Long rideId, Long riderId);
 
+    @NonNull
+    List<@NonNull Booking> findByRideIdAndStatusOrderByCreatedAtInstantAscIdAsc(Long rideId, BookingStatus status);
+
+    /**
+     * Moves a booking off the waitlist, unless a concurrent request already promoted or cancelled it.
+     * Clears the persistence context, so entities loaded before the call are detached.
+     *
+     * @return 1 if this call promoted the booking, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Booking b SET b.status = :status WHERE b.id = :id AND b.status = 'WAITLISTED'")
+    int promoteFromWaitlist(@Param("id") Long id, @Param("status") BookingStatus status);
+
+    /**
+     * Moves a booking to a new status, unless a concurrent request already moved it out of the expected one.
+     * Ends any seat hold; {@code cancelledAt} is stored as given. Entities already loaded keep their old values.
+     *
+     * @return 1 if this call changed the booking, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Booking b SET b.status = :status, b.holdExpiresAt = null, b.cancelledAt = :cancelledAt "
+            + "WHERE b.id = :id AND b.status = :expected")
+    int changeStatus(@Param("id") Long id, @Param("expected") BookingStatus expected,
+                     @Param("status") BookingStatus status, @Param("cancelledAt") Instant cancelledAt);
+
+    /**
+     * Turns an expired hold back into a pending request. The caller releases the seats.
+     *
+     * @return 1 if this call expired the hold, 0 if it was settled or is not due yet
+     */
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = 'PENDING', b.holdExpiresAt = null "
+            + "WHERE b.id = :id AND b.status = 'HELD' AND b.holdExpiresAt <= :now")
+    int expireHold(@Param("id") Long id, @Param("now") Instant now);
+
+    @Query("SELECT b FROM Booking b WHERE b.id IN :ids AND b.status = 'HELD'")
+    @NonNull
+    List<@NonNull Booking> findHeldByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id AS id, b.holdExpiresAt AS holdExpiresAt FROM Booking b WHERE b.status = 'HELD'")
+    @NonNull
+    List<@NonNull HeldBooking> findAllHeld();
+
+    @Query("SELECT b.ride.id AS rideId, b.rider.id AS riderId FROM Booking b WHERE b.ride.id IN :rideIds AND b.status = :status")
+    @NonNull
+    List<@NonNull BookingRider> findRidersByRideIdInAndStatus(@Param("rideIds") Collection<Long> rideIds,
+                                                               @Param("status") BookingStatus status);
+
     @Query("SELECT COUNT(b) FROM Booking b WHERE b.ride.id = :rideId AND b.status != 'CANCELLED'")
     @NonNull
     Integer countActiveBookingsByRideId(@Param("rideId") Long rideId);
@@ -0,0 +1,9 @@
+package me.devziyad.unipoolbackend.booking;
+
+/**
+ * Scalar projection pairing a booking's ride with its rider.
+ */
+public interface BookingRider {
+    Long getRideId();
+    Long getRiderId();
+}
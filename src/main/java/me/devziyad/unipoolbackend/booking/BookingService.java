@@ -1,6 +1,9 @@
 package me.devziyad.unipoolbackend.booking;
 
+import me.devziyad.unipoolbackend.booking.dto.BookingCreatedResponse;
 import me.devziyad.unipoolbackend.booking.dto.BookingResponse;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionRequest;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionResponse;
 import me.devziyad.unipoolbackend.booking.dto.CreateBookingRequest;
 import me.devziyad.unipoolbackend.common.BookingStatus;
 import me.devziyad.unipoolbackend.ride.dto.RideResponse;
@@ -9,10 +12,13 @@ import java.util.List;
 
 public interface BookingService {
     RideResponse createBooking(CreateBookingRequest request, Long riderId);
+    BookingCreatedResponse createBookingLean(CreateBookingRequest request, Long riderId);
     BookingResponse getBookingById(Long id);
     List<BookingResponse> getBookingsForRider(Long riderId);
     List<BookingResponse> getBookingsForRide(Long rideId, Long driverId);
     void cancelBooking(Long bookingId, Long userId);
     List<BookingResponse> getMyBookings(Long riderId);
     BookingResponse updateBookingStatus(Long bookingId, Long driverId, BookingStatus newStatus);
+    BulkBookingDecisionResponse decideBookings(Long rideId, Long driverId, BulkBookingDecisionRequest request);
+    int expireHolds(List<Long> bookingIds);
 }
\ No newline at end of file
@@ -4,23 +4,30 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import me.devziyad.unipoolbackend.audit.ActionType;
 import me.devziyad.unipoolbackend.audit.AuditService;
+import me.devziyad.unipoolbackend.booking.dto.BookingCreatedResponse;
 import me.devziyad.unipoolbackend.booking.dto.BookingResponse;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionRequest;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionResponse;
 import me.devziyad.unipoolbackend.booking.dto.CreateBookingRequest;
 import me.devziyad.unipoolbackend.common.BookingStatus;
 import me.devziyad.unipoolbackend.common.RideStatus;
 import me.devziyad.unipoolbackend.exception.BusinessException;
+import me.devziyad.unipoolbackend.exception.ConflictException;
 import me.devziyad.unipoolbackend.exception.ForbiddenException;
 import me.devziyad.unipoolbackend.exception.ResourceNotFoundException;
 import me.devziyad.unipoolbackend.location.Location;
 import me.devziyad.unipoolbackend.location.LocationRepository;
 import me.devziyad.unipoolbackend.notification.NotificationService;
+import me.devziyad.unipoolbackend.notification.dto.NotificationMessage;
 import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideChangedEvent;
 import me.devziyad.unipoolbackend.ride.RideRepository;
 import me.devziyad.unipoolbackend.ride.RideService;
 import me.devziyad.unipoolbackend.ride.dto.RideResponse;
 import me.devziyad.unipoolbackend.user.User;
 import me.devziyad.unipoolbackend.user.UserRepository;
 import me.devziyad.unipoolbackend.user.UserSettingsRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.request.RequestContextHolder;
@@ -29,7 +36,12 @@ import org.springframework.web.context.request.ServletRequestAttributes;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -44,6 +56,8 @@ public class BookingServiceImpl implements BookingService {
     private final AuditService auditService;
     private final RideService rideService;
     private final UserSettingsRepository userSettingsRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SeatHoldTimer seatHoldTimer;
 
     private HttpServletRequest getCurrentRequest() {
         ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
@@ -71,14 +85,37 @@ public class BookingServiceImpl implements BookingService {
                 .status(booking.getStatus())
                 .costForThisRider(booking.getCostForThisRider())
                 .cancelledAt(booking.getCancelledAt())
+                .holdExpiresAt(booking.getHoldExpiresAt())
                 .build();
     }
 
     @Override
     @Transactional
     public RideResponse createBooking(CreateBookingRequest request, Long riderId) {
-        // Use pessimistic locking to prevent race conditions on seat availability
-        Ride ride = rideRepository.findById(request.getRideId())
+        Booking booking = placeBooking(request, riderId);
+        // Return updated ride with all bookings
+        return rideService.getRideById(booking.getRide().getId());
+    }
+
+    @Override
+    @Transactional
+    public BookingCreatedResponse createBookingLean(CreateBookingRequest request, Long riderId) {
+        Booking booking = placeBooking(request, riderId);
+        Ride ride = booking.getRide();
+        return BookingCreatedResponse.builder()
+                .booking(toResponse(booking))
+                .rideId(ride.getId())
+                .availableSeats(ride.getAvailableSeats())
+                .rideVersion(ride.getVersion())
+                .build();
+    }
+
+    /**
+     * Validates and saves a booking. The returned booking's ride is freshly loaded, without its
+     * bookings, so it carries the seat count and version after this booking.
+     */
+    private Booking placeBooking(CreateBookingRequest request, Long riderId) {
+        Ride ride = rideRepository.findByIdWithoutBookings(request.getRideId())
                 .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
 
         if (ride.getDriver().getId().equals(riderId)) {
@@ -122,36 +159,16 @@ public class BookingServiceImpl implements BookingService {
             throw new BusinessException("Number of seats cannot exceed ride capacity");
         }
 
-        // Check for duplicate booking BEFORE locking
         if (bookingRepository.findByRideIdAndRiderId(request.getRideId(), riderId).isPresent()) {
             throw new BusinessException("You already have a booking for this ride");
         }
 
-        // Reload ride with pessimistic lock to prevent concurrent modifications
-        // This ensures only one booking can be processed at a time for this ride
-        ride = rideRepository.findByIdWithLock(request.getRideId())
-                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
-
-        // Re-validate all conditions after acquiring lock (double-check pattern)
-        if (ride.getStatus() != RideStatus.POSTED) {
-            throw new BusinessException("Ride is not available for booking");
-        }
-        
-        // Check available seats - calculate from confirmed bookings for accuracy
-        long confirmedSeats = bookingRepository.findByRideId(ride.getId()).stream()
-                .filter(b -> b.getStatus() == BookingStatus.CONFIRMED)
-                .mapToInt(Booking::getSeatsBooked)
-                .sum();
-        
-        int availableSeats = ride.getTotalSeats() - (int) confirmedSeats;
-        if (availableSeats < request.getSeats()) {
+        // Early check only; the seats themselves are taken atomically by reserveSeats at the end
+        boolean joinWaitlist = Boolean.TRUE.equals(request.getJoinWaitlist());
+        boolean rideFull = ride.getAvailableSeats() < request.getSeats();
+        if (rideFull && !joinWaitlist) {
             throw new BusinessException("Not enough available seats");
         }
-        
-        // Keep ride.availableSeats in sync (should match confirmed bookings)
-        if (ride.getAvailableSeats() != availableSeats) {
-            ride.setAvailableSeats(availableSeats);
-        }
 
         User rider = userRepository.findById(riderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Rider not found"));
@@ -177,12 +194,16 @@ public class BookingServiceImpl implements BookingService {
                 .map(settings -> Boolean.TRUE.equals(settings.getAutoAcceptBookings()))
                 .orElse(false);
 
-        BookingStatus initialStatus = autoAccept ? BookingStatus.CONFIRMED : BookingStatus.PENDING;
+        boolean holdSeats = Boolean.TRUE.equals(request.getHoldSeats());
 
-        // Only reserve seats if booking is confirmed
-        if (autoAccept) {
-            ride.setAvailableSeats(ride.getAvailableSeats() - request.getSeats());
-            rideRepository.save(ride);
+        BookingStatus initialStatus;
+        if (rideFull) {
+            initialStatus = BookingStatus.WAITLISTED;
+        } else if (!autoAccept && !holdSeats) {
+            initialStatus = BookingStatus.PENDING;
+        } else {
+            // Only confirmed and held bookings take seats; they are reserved last, below
+            initialStatus = autoAccept ? BookingStatus.CONFIRMED : BookingStatus.HELD;
         }
 
         Booking booking = Booking.builder()
@@ -195,9 +216,14 @@ public class BookingServiceImpl implements BookingService {
                 .seatsBooked(request.getSeats())
                 .status(initialStatus)
                 .costForThisRider(costForRider)
+                .holdExpiresAt(initialStatus == BookingStatus.HELD
+                        ? Instant.now().plus(seatHoldTimer.getHoldDuration()) : null)
                 .build();
 
         booking = bookingRepository.save(booking);
+        if (initialStatus == BookingStatus.HELD) {
+            seatHoldTimer.schedule(booking.getId(), booking.getHoldExpiresAt());
+        }
 
         // Audit log
         java.util.Map<String, Object> metadata = new java.util.HashMap<>();
@@ -208,27 +234,49 @@ public class BookingServiceImpl implements BookingService {
         auditService.logAction(ActionType.BOOKING_CREATE, riderId, metadata, getCurrentRequest());
 
         // Create notification based on status
-        if (autoAccept) {
-            notificationService.createNotification(
+        if (initialStatus == BookingStatus.WAITLISTED) {
+            notificationService.enqueueNotification(
+                    riderId,
+                    "Added to Waitlist",
+                    String.format("Ride #%d is full. You are on its waitlist and will be notified if a seat opens up", ride.getId()),
+                    me.devziyad.unipoolbackend.common.NotificationType.BOOKING_WAITLISTED
+            );
+        } else if (autoAccept) {
+            notificationService.enqueueNotification(
                     ride.getDriver().getId(),
                     "Booking Confirmed",
                     String.format("%s booked %d seat(s) on your ride (auto-accepted)", rider.getFullName(), request.getSeats()),
                     me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED
             );
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     riderId,
                     "Booking Confirmed",
                     String.format("Your booking for ride #%d has been confirmed", ride.getId()),
                     me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED
             );
+        } else if (initialStatus == BookingStatus.HELD) {
+            long holdMinutes = seatHoldTimer.getHoldDuration().toMinutes();
+            notificationService.enqueueNotification(
+                    ride.getDriver().getId(),
+                    "New Booking Request",
+                    String.format("%s requested to book %d seat(s) on your ride. The seats are held for %d minutes",
+                            rider.getFullName(), request.getSeats(), holdMinutes),
+                    me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED
+            );
+            notificationService.enqueueNotification(
+                    riderId,
+                    "Seats Held",
+                    String.format("Your seats on ride #%d are held for %d minutes while the driver confirms", ride.getId(), holdMinutes),
+                    me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED
+            );
         } else {
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     ride.getDriver().getId(),
                     "New Booking Request",
                     String.format("%s requested to book %d seat(s) on your ride", rider.getFullName(), request.getSeats()),
                     me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED
             );
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     riderId,
                     "Booking Pending",
                     String.format("Your booking request for ride #%d is pending driver confirmation", ride.getId()),
@@ -236,8 +284,29 @@ public class BookingServiceImpl implements BookingService {
             );
         }
 
-        // Return updated ride with all bookings
-        return rideService.getRideById(ride.getId());
+        // The ride row stays locked from its UPDATE until commit, so that UPDATE is the last write here;
+        // concurrent bookers of the ride then only wait on each other for the commit itself
+        if (initialStatus == BookingStatus.CONFIRMED || initialStatus == BookingStatus.HELD) {
+            // The conditional update is the real availability check. Losing the last seats to a concurrent
+            // booking after the early check rolls back everything written above
+            if (rideRepository.reserveSeats(ride.getId(), request.getSeats()) == 0) {
+                if (joinWaitlist) {
+                    throw new ConflictException("The last seats were just taken; book again to join the waitlist");
+                }
+                throw new BusinessException("Not enough available seats");
+            }
+        } else {
+            // Only the passenger list changed; bump the version so clients holding the ride's ETag refresh
+            rideRepository.bumpVersion(ride.getId());
+        }
+        // The seat or version update detached the loaded ride; reload it for the new seat count and version
+        ride = rideRepository.findByIdWithoutBookings(ride.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        booking.setRide(ride);
+        // Seats or passenger list changed; cached searches showing this ride are refreshed after commit
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
+
+        return booking;
     }
 
     @Override
@@ -290,27 +359,36 @@ public class BookingServiceImpl implements BookingService {
         // Store original status before updating
         BookingStatus originalStatus = booking.getStatus();
         Ride ride = booking.getRide();
-        
-        booking.setStatus(BookingStatus.CANCELLED);
-        booking.setCancelledAt(Instant.now());
-        bookingRepository.save(booking);
+        // Only the request that moves the booking out of the status read above touches the seats;
+        // a concurrent cancel, confirm or hold expiry that got there first makes this one fail
+        if (bookingRepository.changeStatus(bookingId, originalStatus, BookingStatus.CANCELLED, Instant.now()) == 0) {
+            throw new ConflictException("Booking was changed by another request, please retry");
+        }
 
-        // Return seats to ride only if booking was confirmed (seats were reserved)
-        if (originalStatus == BookingStatus.CONFIRMED) {
-            ride.setAvailableSeats(ride.getAvailableSeats() + booking.getSeatsBooked());
-            rideRepository.save(ride);
+        // Return seats to ride only if booking was confirmed or held (seats were reserved)
+        if (originalStatus == BookingStatus.CONFIRMED || originalStatus == BookingStatus.HELD) {
+            rideRepository.releaseSeats(ride.getId(), booking.getSeatsBooked());
+        } else {
+            rideRepository.bumpVersion(ride.getId());
+        }
+        if (originalStatus != BookingStatus.WAITLISTED) {
+            promoteWaitlisted(ride.getId());
         }
+        // Seat updates and promotion detach loaded entities; reload the ride for the event
+        ride = rideRepository.findByIdWithoutBookings(ride.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
 
         // Create notification
         if (booking.getRider().getId().equals(userId)) {
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     ride.getDriver().getId(),
                     "Booking Cancelled",
                     String.format("%s cancelled their booking", booking.getRider().getFullName()),
                     me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CANCELLED
             );
         } else {
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     booking.getRider().getId(),
                     "Booking Cancelled",
                     "Your booking was cancelled by the driver",
@@ -336,8 +414,8 @@ public class BookingServiceImpl implements BookingService {
         }
 
         // Validate status transition
-        if (booking.getStatus() != BookingStatus.PENDING) {
-            throw new BusinessException("Can only update status of pending bookings");
+        if (booking.getStatus() != BookingStatus.PENDING && booking.getStatus() != BookingStatus.HELD) {
+            throw new BusinessException("Can only update status of pending or held bookings");
         }
 
         if (newStatus != BookingStatus.CONFIRMED && newStatus != BookingStatus.CANCELLED) {
@@ -348,30 +426,32 @@ public class BookingServiceImpl implements BookingService {
         BookingStatus originalStatus = booking.getStatus();
         Ride ride = booking.getRide();
 
-        // If confirming, check seat availability and reserve seats
-        if (newStatus == BookingStatus.CONFIRMED) {
-            // Check available seats (only confirmed bookings count, excluding this one since it's still pending)
-            long confirmedSeats = bookingRepository.findByRideId(ride.getId()).stream()
-                    .filter(b -> b.getStatus() == BookingStatus.CONFIRMED)
-                    .mapToInt(Booking::getSeatsBooked)
-                    .sum();
-            
-            int availableSeats = ride.getTotalSeats() - (int) confirmedSeats;
-            if (availableSeats < booking.getSeatsBooked()) {
-                throw new BusinessException("Not enough available seats to confirm this booking");
-            }
-
-            // Reserve seats and keep in sync
-            ride.setAvailableSeats(availableSeats - booking.getSeatsBooked());
-            rideRepository.save(ride);
+        Instant cancelledAt = newStatus == BookingStatus.CANCELLED ? Instant.now() : null;
+        // Fails if a concurrent request, or a hold expiring back to pending, changed the booking since it was read
+        if (bookingRepository.changeStatus(bookingId, originalStatus, newStatus, cancelledAt) == 0) {
+            throw new ConflictException("Booking was changed by another request, please retry");
+        }
+        // A held booking already has its seats
+        boolean heldSeats = originalStatus == BookingStatus.HELD;
+
+        // If confirming, reserve seats; the conditional update fails if they were taken meanwhile,
+        // and the exception rolls the status change back
+        if (newStatus == BookingStatus.CONFIRMED && !heldSeats
+                && rideRepository.reserveSeats(ride.getId(), booking.getSeatsBooked()) == 0) {
+            throw new BusinessException("Not enough available seats to confirm this booking");
         }
 
-        // Update booking status
-        booking.setStatus(newStatus);
         if (newStatus == BookingStatus.CANCELLED) {
-            booking.setCancelledAt(Instant.now());
+            if (heldSeats) {
+                rideRepository.releaseSeats(ride.getId(), booking.getSeatsBooked());
+            } else {
+                rideRepository.bumpVersion(ride.getId());
+            }
+            promoteWaitlisted(ride.getId());
         }
-        booking = bookingRepository.save(booking);
+        ride = rideRepository.findByIdWithoutBookings(ride.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
 
         // Audit log
         java.util.Map<String, Object> metadata = new java.util.HashMap<>();
@@ -383,14 +463,14 @@ public class BookingServiceImpl implements BookingService {
 
         // Create notifications
         if (newStatus == BookingStatus.CONFIRMED) {
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     booking.getRider().getId(),
                     "Booking Confirmed",
                     String.format("Your booking for ride #%d has been confirmed by the driver", ride.getId()),
                     me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED
             );
         } else if (newStatus == BookingStatus.CANCELLED) {
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     booking.getRider().getId(),
                     "Booking Cancelled",
                     String.format("Your booking request for ride #%d was cancelled by the driver", ride.getId()),
@@ -398,6 +478,257 @@ public class BookingServiceImpl implements BookingService {
             );
         }
 
-        return toResponse(booking);
+        // The loaded entity still holds the old values; the change was applied by the conditional update
+        BookingResponse response = toResponse(booking);
+        response.setStatus(newStatus);
+        response.setCancelledAt(cancelledAt);
+        response.setHoldExpiresAt(null);
+        return response;
+    }
+
+    @Override
+    @Transactional
+    public BulkBookingDecisionResponse decideBookings(Long rideId, Long driverId, BulkBookingDecisionRequest request) {
+        // Loads the ride's bookings with it, so no decision reloads its booking
+        Ride ride = rideRepository.findById(rideId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+
+        if (!ride.getDriver().getId().equals(driverId)) {
+            throw new ForbiddenException("Only the driver can update booking status");
+        }
+
+        Map<Long, Booking> bookingsById = ride.getBookings().stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        int freeSeats = ride.getAvailableSeats();
+        int seatsToReserve = 0;
+        int seatsToRelease = 0;
+        Instant now = Instant.now();
+
+        Set<Long> seen = new HashSet<>();
+        List<Long> confirmedIds = new ArrayList<>();
+        List<Long> cancelledIds = new ArrayList<>();
+        List<BulkBookingDecisionResponse.Result> results = new ArrayList<>();
+        List<NotificationMessage> notifications = new ArrayList<>();
+
+        // Decisions are applied in request order; a confirmation that no longer fits is rejected on its own
+        for (BulkBookingDecisionRequest.Decision decision : request.getDecisions()) {
+            Booking booking = bookingsById.get(decision.getBookingId());
+            String error = null;
+            if (!seen.add(decision.getBookingId())) {
+                error = "Duplicate decision for this booking";
+            } else if (booking == null) {
+                error = "Booking not found on this ride";
+            } else if (booking.getStatus() != BookingStatus.PENDING && booking.getStatus() != BookingStatus.HELD) {
+                error = "Can only update status of pending or held bookings";
+            } else if (decision.getStatus() != BookingStatus.CONFIRMED && decision.getStatus() != BookingStatus.CANCELLED) {
+                error = "Can only update booking to CONFIRMED or CANCELLED";
+            }
+
+            // A held booking already has its seats
+            boolean heldSeats = error == null && booking.getStatus() == BookingStatus.HELD;
+            if (error == null && !heldSeats && decision.getStatus() == BookingStatus.CONFIRMED
+                    && booking.getSeatsBooked() > freeSeats - seatsToReserve) {
+                error = "Not enough available seats to confirm this booking";
+            }
+            // Only a booking still in the status read with the ride is changed, and only those count towards seats
+            if (error == null && bookingRepository.changeStatus(booking.getId(), booking.getStatus(), decision.getStatus(),
+                    decision.getStatus() == BookingStatus.CANCELLED ? now : null) == 0) {
+                error = "Booking was changed by another request";
+            }
+
+            if (error != null) {
+                results.add(BulkBookingDecisionResponse.Result.builder()
+                        .bookingId(decision.getBookingId())
+                        .requestedStatus(decision.getStatus())
+                        .status(booking != null ? booking.getStatus() : null)
+                        .applied(false)
+                        .message(error)
+                        .build());
+                continue;
+            }
+
+            if (decision.getStatus() == BookingStatus.CONFIRMED) {
+                if (!heldSeats) {
+                    seatsToReserve += booking.getSeatsBooked();
+                }
+                confirmedIds.add(booking.getId());
+                notifications.add(NotificationMessage.builder()
+                        .userId(booking.getRider().getId())
+                        .title("Booking Confirmed")
+                        .body(String.format("Your booking for ride #%d has been confirmed by the driver", rideId))
+                        .type(me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CONFIRMED)
+                        .build());
+            } else {
+                if (heldSeats) {
+                    seatsToRelease += booking.getSeatsBooked();
+                }
+                cancelledIds.add(booking.getId());
+                notifications.add(NotificationMessage.builder()
+                        .userId(booking.getRider().getId())
+                        .title("Booking Cancelled")
+                        .body(String.format("Your booking request for ride #%d was cancelled by the driver", rideId))
+                        .type(me.devziyad.unipoolbackend.common.NotificationType.BOOKING_CANCELLED)
+                        .build());
+            }
+            results.add(BulkBookingDecisionResponse.Result.builder()
+                    .bookingId(booking.getId())
+                    .requestedStatus(decision.getStatus())
+                    .status(decision.getStatus())
+                    .applied(true)
+                    .build());
+        }
+
+        int applied = confirmedIds.size() + cancelledIds.size();
+        // One conditional update each for released and confirmed seats
+        if (seatsToRelease > 0) {
+            rideRepository.releaseSeats(rideId, seatsToRelease);
+        }
+        if (seatsToReserve > 0 && rideRepository.reserveSeats(rideId, seatsToReserve) == 0) {
+            throw new BusinessException("Seat availability changed while applying decisions, please retry");
+        }
+        if (seatsToReserve == 0 && seatsToRelease == 0 && applied > 0) {
+            rideRepository.bumpVersion(rideId);
+        }
+
+        if (!cancelledIds.isEmpty()) {
+            promoteWaitlisted(rideId);
+        }
+
+        ride = rideRepository.findByIdWithoutBookings(rideId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        if (applied > 0) {
+            eventPublisher.publishEvent(RideChangedEvent.of(ride));
+        }
+
+        notificationService.enqueueNotifications(notifications);
+
+        // Audit log: one entry for the whole batch
+        java.util.Map<String, Object> metadata = new java.util.HashMap<>();
+        metadata.put("rideId", rideId);
+        metadata.put("confirmedBookingIds", confirmedIds);
+        metadata.put("cancelledBookingIds", cancelledIds);
+        metadata.put("rejected", results.size() - applied);
+        auditService.logAction(ActionType.BOOKING_BULK_DECISION, driverId, metadata, getCurrentRequest());
+
+        return BulkBookingDecisionResponse.builder()
+                .rideId(rideId)
+                .availableSeats(ride.getAvailableSeats())
+                .confirmed(confirmedIds.size())
+                .cancelled(cancelledIds.size())
+                .rejected(results.size() - applied)
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Turns the given holds back into pending requests if they are due and still held, then gives their seats
+     * back with one update per ride and offers them to the ride's waitlist. Holds that were confirmed
+     * or cancelled in the meantime are left alone.
+     *
+     * @return number of holds expired
+     */
+    @Override
+    @Transactional
+    public int expireHolds(List<Long> bookingIds) {
+        Instant now = Instant.now();
+        Map<Long, Integer> releasedSeatsByRide = new java.util.HashMap<>();
+        List<NotificationMessage> notifications = new ArrayList<>();
+
+        for (Booking booking : bookingRepository.findHeldByIdIn(bookingIds)) {
+            if (bookingRepository.expireHold(booking.getId(), now) == 0) {
+                continue;
+            }
+            Long rideId = booking.getRide().getId();
+            releasedSeatsByRide.merge(rideId, booking.getSeatsBooked(), Integer::sum);
+            notifications.add(NotificationMessage.builder()
+                    .userId(booking.getRider().getId())
+                    .title("Seat Hold Expired")
+                    .body(String.format("The driver didn't respond in time, so your seats on ride #%d are no longer held. "
+                            + "Your booking is still pending", rideId))
+                    .type(me.devziyad.unipoolbackend.common.NotificationType.BOOKING_HOLD_EXPIRED)
+                    .build());
+        }
+
+        for (Map.Entry<Long, Integer> released : releasedSeatsByRide.entrySet()) {
+            rideRepository.releaseSeats(released.getKey(), released.getValue());
+            promoteWaitlisted(released.getKey());
+            Ride ride = rideRepository.findByIdWithoutBookings(released.getKey())
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+            eventPublisher.publishEvent(RideChangedEvent.of(ride));
+        }
+
+        notificationService.enqueueNotifications(notifications);
+        return notifications.size();
+    }
+
+    /**
+     * Moves waitlisted bookings, oldest first, into the seats now free on the ride. A booking that needs
+     * more seats than are left is skipped so a smaller one behind it can still go through. Bookings are
+     * confirmed if the driver auto-accepts and otherwise become pending, as a new booking would.
+     * Runs in the caller's transaction and clears the persistence context when it promotes anyone.
+     */
+    private void promoteWaitlisted(Long rideId) {
+        Ride ride = rideRepository.findByIdWithoutBookings(rideId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        if (ride.getStatus() != RideStatus.POSTED) {
+            return;
+        }
+        List<Booking> waitlist = bookingRepository.findByRideIdAndStatusOrderByCreatedAtInstantAscIdAsc(
+                rideId, BookingStatus.WAITLISTED);
+        if (waitlist.isEmpty()) {
+            return;
+        }
+
+        Long driverId = ride.getDriver().getId();
+        boolean autoAccept = userSettingsRepository.findByUserId(driverId)
+                .map(settings -> Boolean.TRUE.equals(settings.getAutoAcceptBookings()))
+                .orElse(false);
+        BookingStatus promotedStatus = autoAccept ? BookingStatus.CONFIRMED : BookingStatus.PENDING;
+        int freeSeats = ride.getAvailableSeats();
+        Instant now = Instant.now();
+
+        for (Booking waiting : waitlist) {
+            if (freeSeats <= 0) {
+                break;
+            }
+            if (waiting.getSeatsBooked() > freeSeats || waiting.getPickupTimeStart().isBefore(now)) {
+                continue;
+            }
+            if (autoAccept && rideRepository.reserveSeats(rideId, waiting.getSeatsBooked()) == 0) {
+                // A concurrent booking took the seats
+                break;
+            }
+            if (bookingRepository.promoteFromWaitlist(waiting.getId(), promotedStatus) == 0) {
+                // Promoted or cancelled by a concurrent request
+                if (autoAccept) {
+                    rideRepository.releaseSeats(rideId, waiting.getSeatsBooked());
+                }
+                continue;
+            }
+            freeSeats -= waiting.getSeatsBooked();
+
+            if (autoAccept) {
+                notificationService.enqueueNotification(
+                        waiting.getRider().getId(),
+                        "Booking Confirmed",
+                        String.format("A seat opened up on ride #%d and your waitlisted booking has been confirmed", rideId),
+                        me.devziyad.unipoolbackend.common.NotificationType.WAITLIST_PROMOTED
+                );
+            } else {
+                notificationService.enqueueNotification(
+                        waiting.getRider().getId(),
+                        "Seat Available",
+                        String.format("A seat opened up on ride #%d. Your booking is now pending driver confirmation", rideId),
+                        me.devziyad.unipoolbackend.common.NotificationType.WAITLIST_PROMOTED
+                );
+                notificationService.enqueueNotification(
+                        driverId,
+                        "New Booking Request",
+                        String.format("%s requested to book %d seat(s) on your ride (from the waitlist)",
+                                waiting.getRider().getFullName(), waiting.getSeatsBooked()),
+                        me.devziyad.unipoolbackend.common.NotificationType.WAITLIST_PROMOTED
+                );
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package me.devziyad.unipoolbackend.booking;
+
+import java.time.Instant;
+
+/**
+ * Scalar projection of a held booking, used to rebuild the hold timer without loading entities.
+ */
+public interface HeldBooking {
+    Long getId();
+    Instant getHoldExpiresAt();
+}
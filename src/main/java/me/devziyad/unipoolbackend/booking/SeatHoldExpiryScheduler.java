@@ -0,0 +1,44 @@
+package me.devziyad.unipoolbackend.booking;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SeatHoldExpiryScheduler {
+
+    private final SeatHoldTimer seatHoldTimer;
+    private final BookingService bookingService;
+
+    @Value("${booking.hold.expiry-batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${booking.hold.tick-millis:1000}")
+    public void expireDueHolds() {
+        List<Long> due = seatHoldTimer.due(Instant.now());
+        if (due.isEmpty()) {
+            return;
+        }
+        int expired = 0;
+        // One transaction per batch, so a large burst of expiries doesn't hold locks on every ride at once
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                expired += bookingService.expireHolds(batch);
+            } catch (RuntimeException e) {
+                // Put the batch back so the next tick retries it
+                log.warn("Failed to expire {} seat holds, retrying on the next tick", batch.size(), e);
+                Instant retryAt = Instant.now();
+                batch.forEach(id -> seatHoldTimer.schedule(id, retryAt));
+            }
+        }
+        log.debug("{} of {} due seat holds expired", expired, due.size());
+    }
+}
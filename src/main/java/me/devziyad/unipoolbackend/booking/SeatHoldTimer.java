@@ -0,0 +1,75 @@
+package me.devziyad.unipoolbackend.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.util.TimingWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Tracks when seat holds run out, on an in-memory {@link TimingWheel} of booking ids. Holds are persisted on
+ * the booking ({@link Booking#getHoldExpiresAt()}), so the wheel is rebuilt from the database on startup.
+ * A hold that was confirmed or cancelled before it fires is skipped by the expiry update itself.
+ */
+@Component
+@Slf4j
+public class SeatHoldTimer {
+
+    private final BookingRepository bookingRepository;
+    private final Duration holdDuration;
+    private final TimingWheel<Long> wheel;
+
+    public SeatHoldTimer(BookingRepository bookingRepository,
+                         @Value("${booking.hold.ttl-minutes:10}") long ttlMinutes,
+                         @Value("${booking.hold.tick-millis:1000}") long tickMillis,
+                         @Value("${booking.hold.wheel-size:512}") int wheelSize) {
+        this.bookingRepository = bookingRepository;
+        this.holdDuration = Duration.ofMinutes(ttlMinutes);
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+    }
+
+    public Duration getHoldDuration() {
+        return holdDuration;
+    }
+
+    /**
+     * Schedules the hold's expiry once the current transaction commits, so the expiry can't run
+     * before the held booking is visible to it.
+     */
+    public void schedule(Long bookingId, Instant expiresAt) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wheel.schedule(bookingId, expiresAt.toEpochMilli());
+                }
+            });
+        } else {
+            wheel.schedule(bookingId, expiresAt.toEpochMilli());
+        }
+    }
+
+    /**
+     * @return ids of bookings whose hold has run out since the last call
+     */
+    public List<Long> due(Instant now) {
+        return wheel.advance(now.toEpochMilli());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        wheel.clear();
+        List<HeldBooking> held = bookingRepository.findAllHeld();
+        for (HeldBooking booking : held) {
+            wheel.schedule(booking.getId(), booking.getHoldExpiresAt().toEpochMilli());
+        }
+        log.info("Seat hold timer rebuilt with {} held bookings", held.size());
+    }
+}
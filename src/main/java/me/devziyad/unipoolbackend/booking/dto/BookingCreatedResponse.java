@@ -0,0 +1,18 @@
+package me.devziyad.unipoolbackend.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingCreatedResponse {
+    private BookingResponse booking;
+    private Long rideId;
+    private Integer availableSeats;
+    // Same value as the ride's ETag; refetch the ride only when this differs from the one held
+    private Long rideVersion;
+}
@@ -33,5 +33,6 @@ public class BookingResponse {
     private BookingStatus status;
     private BigDecimal costForThisRider;
     private Instant cancelledAt;
+    private Instant holdExpiresAt;
 }
 
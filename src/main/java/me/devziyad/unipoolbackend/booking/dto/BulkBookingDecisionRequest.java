@@ -0,0 +1,26 @@
+package me.devziyad.unipoolbackend.booking.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+
+import java.util.List;
+
+@Data
+public class BulkBookingDecisionRequest {
+    @NotEmpty(message = "At least one decision is required")
+    @Size(max = 100, message = "Cannot decide more than 100 bookings at once")
+    private List<@Valid Decision> decisions;
+
+    @Data
+    public static class Decision {
+        @NotNull(message = "Booking ID is required")
+        private Long bookingId;
+
+        @NotNull(message = "Status is required")
+        private BookingStatus status;
+    }
+}
@@ -0,0 +1,36 @@
+package me.devziyad.unipoolbackend.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkBookingDecisionResponse {
+    private Long rideId;
+    private Integer availableSeats;
+    private Integer confirmed;
+    private Integer cancelled;
+    private Integer rejected;
+    private List<Result> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private Long bookingId;
+        private BookingStatus requestedStatus;
+        // Status after the batch; null if the booking was not found on this ride
+        private BookingStatus status;
+        private Boolean applied;
+        // Why the decision was not applied
+        private String message;
+    }
+}
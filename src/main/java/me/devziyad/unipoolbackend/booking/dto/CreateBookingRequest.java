@@ -27,5 +27,11 @@ public class CreateBookingRequest {
     @NotNull(message = "Pickup time end is required")
     @Future(message = "Pickup time end must be in the future")
     private java.time.Instant pickupTimeEnd;
+
+    // If the ride doesn't have enough seats, join its waitlist instead of failing
+    private Boolean joinWaitlist;
+
+    // If the driver confirms bookings manually, reserve the seats until they decide or the hold expires
+    private Boolean holdSeats;
 }
 
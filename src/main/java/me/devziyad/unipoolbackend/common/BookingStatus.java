@@ -4,5 +4,8 @@ public enum BookingStatus {
     PENDING,
     CONFIRMED,
     CANCELLED,
-    COMPLETED
+    COMPLETED,
+    WAITLISTED,
+    // Seats reserved for a limited time while the driver decides
+    HELD
 }
\ No newline at end of file
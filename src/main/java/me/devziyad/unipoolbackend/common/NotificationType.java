@@ -6,5 +6,8 @@ public enum NotificationType {
     PAYMENT_RECEIVED,
     RIDE_REMINDER,
     RIDE_IN_PROGRESS,
-    RIDE_COMPLETED
+    RIDE_COMPLETED,
+    BOOKING_WAITLISTED,
+    WAITLIST_PROMOTED,
+    BOOKING_HOLD_EXPIRED
 }
\ No newline at end of file
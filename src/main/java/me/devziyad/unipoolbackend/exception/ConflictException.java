@@ -0,0 +1,7 @@
+package me.devziyad.unipoolbackend.exception;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
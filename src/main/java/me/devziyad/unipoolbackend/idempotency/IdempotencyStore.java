@@ -0,0 +1,219 @@
+package me.devziyad.unipoolbackend.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.exception.BusinessException;
+import me.devziyad.unipoolbackend.exception.ConflictException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Runs a write at most once per {@code Idempotency-Key} and user, answering retries with the stored response.
+ * Completed responses are kept in a bounded in-memory LRU in front of the {@code idempotency_records} table,
+ * so a replay touches neither the ride rows nor, usually, the database.
+ * <p>
+ * A key is claimed by inserting its row before the write runs; the unique constraint turns a concurrent
+ * retry into a 409 instead of a second booking or payment. If the write throws, the claim is released so the
+ * client can retry once the cause is fixed. A claim whose response was never recorded (the process stopped after
+ * the write may have committed) is never re-executed; the key answers 409 until it expires.
+ */
+@Component
+@Slf4j
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final int maxEntries;
+    private final Duration ttl;
+    // After this long without a response, a claim is reported as abandoned rather than in progress
+    private final Duration claimTimeout;
+
+    private final LinkedHashMap<String, IdempotencyRecord> completed = new LinkedHashMap<>(16, 0.75f, true);
+
+    public IdempotencyStore(IdempotencyRecordRepository repository,
+                            ObjectMapper objectMapper,
+                            @Value("${idempotency.cache.max-entries:1000}") int maxEntries,
+                            @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                            @Value("${idempotency.claim-timeout-seconds:60}") long claimTimeoutSeconds) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.maxEntries = maxEntries;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+    }
+
+    /**
+     * Runs {@code action} unless {@code key} was already used by this user, in which case the stored
+     * response is returned. Without a key the action simply runs.
+     *
+     * @param endpoint identifies the operation, so one key can't be replayed against a different endpoint
+     * @throws ConflictException if the key is in use by a running request or was used for a different request
+     */
+    public <T> ResponseEntity<T> execute(String key, Long userId, String endpoint, Object request,
+                                         Class<T> responseType, Supplier<ResponseEntity<T>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException(HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String cacheKey = userId + ":" + key;
+        String requestHash = hash(endpoint, request);
+
+        IdempotencyRecord cached = getCached(cacheKey);
+        if (cached != null) {
+            return replay(cached, requestHash, responseType);
+        }
+
+        Optional<IdempotencyRecord> existing = repository.findByUserIdAndIdempotencyKey(userId, key);
+        if (existing.isPresent()) {
+            IdempotencyRecord record = existing.get();
+            if (record.getExpiresAt().isAfter(Instant.now())) {
+                if (record.getStatusCode() == null) {
+                    checkSameRequest(record, requestHash);
+                    if (record.getCreatedAt().plus(claimTimeout).isAfter(Instant.now())) {
+                        throw new ConflictException("A request with this " + HEADER + " is still in progress");
+                    }
+                    // Its write may have committed; running it again could book or charge twice
+                    throw new ConflictException("A request with this " + HEADER + " did not finish. "
+                            + "Check whether it took effect before retrying with a new key");
+                }
+                putCached(cacheKey, record);
+                return replay(record, requestHash, responseType);
+            }
+            repository.delete(record);
+        }
+
+        IdempotencyRecord claim;
+        try {
+            claim = repository.saveAndFlush(IdempotencyRecord.builder()
+                    .userId(userId)
+                    .idempotencyKey(key)
+                    .requestHash(requestHash)
+                    .expiresAt(Instant.now().plus(ttl))
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Another request claimed the key between the lookup and the insert
+            throw new ConflictException("A request with this " + HEADER + " is still in progress");
+        }
+
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            repository.deleteById(claim.getId());
+            throw e;
+        }
+
+        claim.setStatusCode(response.getStatusCode().value());
+        claim.setResponseBody(toJson(response.getBody()));
+        claim.setETag(response.getHeaders().getETag());
+        claim.setExpiresAt(Instant.now().plus(ttl));
+        putCached(cacheKey, repository.save(claim));
+        return response;
+    }
+
+    /**
+     * Drops expired records from the table and the in-memory cache.
+     *
+     * @return number of rows deleted
+     */
+    public int purgeExpired() {
+        Instant now = Instant.now();
+        synchronized (this) {
+            completed.values().removeIf(record -> !record.getExpiresAt().isAfter(now));
+        }
+        return repository.deleteExpired(now);
+    }
+
+    public synchronized void clear() {
+        completed.clear();
+    }
+
+    private synchronized IdempotencyRecord getCached(String cacheKey) {
+        IdempotencyRecord record = completed.get(cacheKey);
+        if (record != null && !record.getExpiresAt().isAfter(Instant.now())) {
+            completed.remove(cacheKey);
+            return null;
+        }
+        return record;
+    }
+
+    private synchronized void putCached(String cacheKey, IdempotencyRecord record) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        completed.put(cacheKey, record);
+        Iterator<IdempotencyRecord> eldest = completed.values().iterator();
+        while (completed.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(IdempotencyRecord record, String requestHash, Class<T> responseType) {
+        checkSameRequest(record, requestHash);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(record.getStatusCode())
+                .header(REPLAYED_HEADER, "true");
+        if (record.getETag() != null) {
+            builder.eTag(record.getETag());
+        }
+        if (record.getResponseBody() == null) {
+            return builder.build();
+        }
+        try {
+            return builder.body(objectMapper.readValue(record.getResponseBody(), responseType));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored idempotent response could not be read", e);
+        }
+    }
+
+    private void checkSameRequest(IdempotencyRecord record, String requestHash) {
+        if (!record.getRequestHash().equals(requestHash)) {
+            throw new ConflictException(HEADER + " was already used for a different request");
+        }
+    }
+
+    private String hash(String endpoint, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(endpoint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash idempotent request", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store idempotent response", e);
+        }
+    }
+}
@@ -6,7 +6,8 @@ import me.devziyad.unipoolbackend.user.User;
 
 @Entity
 @Table(name = "locations", indexes = {
-    @Index(name = "idx_location_user_id", columnList = "user_id")
+    @Index(name = "idx_location_user_id", columnList = "user_id"),
+    @Index(name = "idx_location_lat_lon", columnList = "latitude, longitude")
 })
 @Getter
 @Setter
@@ -0,0 +1,11 @@
+package me.devziyad.unipoolbackend.notification;
+
+import me.devziyad.unipoolbackend.common.NotificationType;
+
+/**
+ * Scalar projection of a notification type a user has muted.
+ */
+public interface MutedNotificationType {
+    Long getUserId();
+    NotificationType getType();
+}
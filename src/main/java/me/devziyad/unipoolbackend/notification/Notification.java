@@ -10,7 +10,9 @@ import java.time.Instant;
 @Entity
 @Table(name = "notifications", indexes = {
     @Index(name = "idx_notification_user_id", columnList = "user_id"),
-    @Index(name = "idx_notification_read", columnList = "read")
+    @Index(name = "idx_notification_read", columnList = "read"),
+    @Index(name = "idx_notification_user_created_at", columnList = "user_id, createdAt, id"),
+    @Index(name = "idx_notification_read_created_at", columnList = "read, createdAt")
 })
 @Getter
 @Setter
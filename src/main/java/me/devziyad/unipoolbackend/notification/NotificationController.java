@@ -17,9 +17,14 @@ import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
 import me.devziyad.unipoolbackend.notification.dto.UpdateNotificationPreferenceRequest;
 import me.devziyad.unipoolbackend.ride.Ride;
 import me.devziyad.unipoolbackend.ride.RideRepository;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -32,11 +37,18 @@ public class NotificationController {
     private final AuthService authService;
     private final RideRepository rideRepository;
     private final BookingRepository bookingRepository;
+    private final NotificationStreamRegistry notificationStreamRegistry;
 
+    /**
+     * Newest first. For the next page, pass the {@code createdAt} and {@code id} of the last notification returned.
+     */
     @GetMapping("/me")
-    public ResponseEntity<@NonNull List<@NonNull NotificationResponse>> getMyNotifications() {
+    public ResponseEntity<@NonNull List<@NonNull NotificationResponse>> getMyNotifications(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant beforeCreatedAt,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(required = false, defaultValue = "50") int limit) {
         Long userId = authService.getCurrentUser().getId();
-        return ResponseEntity.ok(notificationService.getNotificationsForUser(userId));
+        return ResponseEntity.ok(notificationService.getNotificationsForUser(userId, beforeCreatedAt, beforeId, limit));
     }
 
     @GetMapping("/me/unread")
@@ -51,6 +63,12 @@ public class NotificationController {
         return ResponseEntity.ok(new UnreadCountResponse(notificationService.getUnreadCount(userId)));
     }
 
+    @GetMapping(value = "/me/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<@NonNull ServerSentEvent<Object>> streamMyNotifications() {
+        Long userId = authService.getCurrentUser().getId();
+        return notificationStreamRegistry.open(userId);
+    }
+
     @PostMapping("/{id}/read")
     public ResponseEntity<@NonNull Void> markAsRead(@PathVariable Long id) {
         Long userId = authService.getCurrentUser().getId();
@@ -126,7 +144,7 @@ public class NotificationController {
         // Send notifications to all riders
         int notifiedCount = 0;
         for (Booking booking : bookings) {
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     booking.getRider().getId(),
                     request.getTitle() != null ? request.getTitle() : "Ride Update",
                     request.getMessage() != null ? request.getMessage() : 
@@ -0,0 +1,356 @@
+package me.devziyad.unipoolbackend.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.NotificationType;
+import me.devziyad.unipoolbackend.notification.dto.NotificationMessage;
+import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transactional outbox for notifications. Business transactions append messages, which are written to
+ * {@code notification_outbox} in one JDBC batch just before the transaction commits, so they are delivered
+ * if and only if the transaction commits. The dispatcher later moves them into {@code notifications} in
+ * batches, off the booking and payment paths, collapsing bursts of same-type notifications for one user into
+ * a single digest.
+ * <p>
+ * Reads of a user's notifications call {@link #dispatchPendingFor(Long)} first, so a user always sees the
+ * notifications of their own committed requests; reads by users with nothing queued don't wait on a dispatch. Each delivered batch is published as a
+ * {@link NotificationsDeliveredEvent} once committed.
+ * <p>
+ * Several instances may dispatch the same outbox. Each batch is claimed with {@code FOR UPDATE SKIP LOCKED} in
+ * the transaction that delivers it, and a notification retried on its own is claimed by deleting its row first,
+ * so every queued row is delivered once.
+ */
+@Component
+@Slf4j
+public class NotificationOutbox {
+
+    private static final String INSERT_OUTBOX =
+            "INSERT INTO notification_outbox (user_id, type, title, body, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_OUTBOX =
+            "SELECT id, user_id, type, title, body, created_at FROM notification_outbox ORDER BY id LIMIT ? " +
+            "FOR UPDATE SKIP LOCKED";
+    private static final String INSERT_NOTIFICATION =
+            "INSERT INTO notifications (user_id, type, title, body, read, created_at) VALUES (?, ?, ?, ?, FALSE, ?)";
+    private static final String DELETE_OUTBOX = "DELETE FROM notification_outbox WHERE id = ?";
+    private static final String SELECT_USER_PENDING = "SELECT 1 FROM notification_outbox WHERE user_id = ? LIMIT 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate dispatchTransaction;
+    private final int batchSize;
+    private final int digestThreshold;
+
+    // Set when messages may be waiting, so reads skip the outbox query when it's known to be empty.
+    // Starts true to pick up whatever a previous run left behind
+    private final AtomicBoolean maybePending = new AtomicBoolean(true);
+
+    public NotificationOutbox(JdbcTemplate jdbcTemplate,
+                              ApplicationEventPublisher eventPublisher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${notification.outbox.batch-size:500}") int batchSize,
+                              @Value("${notification.outbox.digest-threshold:5}") int digestThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.dispatchTransaction = new TransactionTemplate(transactionManager);
+        this.dispatchTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.digestThreshold = digestThreshold;
+    }
+
+    /**
+     * Queues a notification. Inside a transaction it is written when the transaction commits, together
+     * with everything else it appended; outside one it is written straight away.
+     */
+    public void append(NotificationMessage message) {
+        appendAll(List.of(message));
+    }
+
+    /**
+     * Queues several notifications; outside a transaction they are written as one batch.
+     */
+    public void appendAll(List<NotificationMessage> messages) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write(messages);
+            maybePending.set(true);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<NotificationMessage> pending = (List<NotificationMessage>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<NotificationMessage> buffer = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    write(buffer);
+                }
+
+                @Override
+                public void afterCommit() {
+                    // Not before: a dispatch between the write and the commit would miss the rows
+                    maybePending.set(true);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NotificationOutbox.this);
+                }
+            });
+            pending = buffer;
+        }
+        pending.addAll(messages);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.outbox.poll-millis:500}")
+    public void dispatchScheduled() {
+        // Always looks, in case rows were written by a transaction this instance didn't see commit
+        maybePending.set(true);
+        dispatchPending();
+    }
+
+    /**
+     * Dispatches before a read of {@code userId}'s notifications. Only waits for and runs a dispatch when that
+     * user has something queued; everyone else reads straight away.
+     *
+     * @return number of notifications delivered
+     */
+    public int dispatchPendingFor(Long userId) {
+        if (!maybePending.get()) {
+            return 0;
+        }
+        Boolean queued = jdbcTemplate.query(SELECT_USER_PENDING, ResultSet::next, userId);
+        if (!Boolean.TRUE.equals(queued)) {
+            return 0;
+        }
+        return dispatchPending();
+    }
+
+    /**
+     * Moves every queued notification into {@code notifications}, one batch per transaction.
+     * Returns at once if nothing was appended since the last dispatch.
+     *
+     * @return number of notifications delivered
+     */
+    public synchronized int dispatchPending() {
+        if (!maybePending.getAndSet(false)) {
+            return 0;
+        }
+        int delivered = 0;
+        int drained;
+        do {
+            List<OutboxRow> rows = new ArrayList<>();
+            try {
+                delivered += dispatchTransaction.execute(status -> {
+                    // Rows another instance is delivering are locked, and skipped here
+                    rows.addAll(jdbcTemplate.query(SELECT_OUTBOX, (rs, i) -> new OutboxRow(
+                            rs.getLong("id"),
+                            rs.getLong("user_id"),
+                            rs.getString("type"),
+                            rs.getString("title"),
+                            rs.getString("body"),
+                            rs.getObject("created_at", OffsetDateTime.class)), batchSize));
+                    return rows.isEmpty() ? 0 : deliver(rows);
+                });
+            } catch (DataAccessException e) {
+                // One bad row (e.g. its user was deleted) must not block the rest; retry them one by one
+                log.warn("Notification batch of {} failed, delivering individually", rows.size(), e);
+                for (OutboxRow row : rows) {
+                    if (deliverOne(row)) {
+                        delivered++;
+                    }
+                }
+            }
+            drained = rows.size();
+        } while (drained == batchSize);
+        return delivered;
+    }
+
+    /**
+     * Drops everything queued, for the admin database reset.
+     */
+    public synchronized void clear() {
+        jdbcTemplate.update("DELETE FROM notification_outbox");
+    }
+
+    private void write(List<NotificationMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        OffsetDateTime now = OffsetDateTime.ofInstant(Instant.now(), ZoneOffset.UTC);
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX, messages, messages.size(), (ps, message) -> {
+            ps.setLong(1, message.getUserId());
+            ps.setString(2, message.getType().name());
+            ps.setString(3, message.getTitle());
+            ps.setString(4, message.getBody());
+            ps.setObject(5, now);
+        });
+    }
+
+    /**
+     * Delivers rows claimed by the current transaction.
+     */
+    private int deliver(List<OutboxRow> rows) {
+        List<OutboxRow> notifications = digest(rows);
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_NOTIFICATION, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        bind(ps, notifications.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return notifications.size();
+                    }
+                }, keys);
+        jdbcTemplate.batchUpdate(DELETE_OUTBOX, rows, rows.size(), (ps, row) -> ps.setLong(1, row.id));
+        List<Map<String, Object>> ids = keys.getKeyList();
+        List<NotificationResponse> responses = new ArrayList<>(notifications.size());
+        for (int i = 0; i < notifications.size(); i++) {
+            responses.add(notifications.get(i).toResponse(ids.get(i)));
+        }
+        // Published inside the transaction, so listeners can act on its commit rather than after it
+        eventPublisher.publishEvent(new NotificationsDeliveredEvent(responses));
+        return responses.size();
+    }
+
+    /**
+     * @return whether this call delivered the row; false if it failed or another instance claimed it first
+     */
+    private boolean deliverOne(OutboxRow row) {
+        try {
+            return Boolean.TRUE.equals(dispatchTransaction.execute(status -> {
+                // The batch's locks went with its rollback, so claim the row again before delivering it
+                if (jdbcTemplate.update(DELETE_OUTBOX, row.id) == 0) {
+                    return false;
+                }
+                KeyHolder keys = new GeneratedKeyHolder();
+                jdbcTemplate.update(con -> {
+                    PreparedStatement ps = con.prepareStatement(INSERT_NOTIFICATION, new String[]{"id"});
+                    bind(ps, row);
+                    return ps;
+                }, keys);
+                eventPublisher.publishEvent(new NotificationsDeliveredEvent(List.of(row.toResponse(keys.getKeys()))));
+                return true;
+            }));
+        } catch (DataAccessException e) {
+            log.warn("Dropping undeliverable notification {} for user {}", row.id, row.userId, e);
+            jdbcTemplate.update(DELETE_OUTBOX, row.id);
+            return false;
+        }
+    }
+
+    /**
+     * Collapses each user's run of {@code digest-threshold} or more same-type notifications in the batch into
+     * one digest notification. A batch holds what was queued within about one poll, so these are bursts.
+     */
+    private List<OutboxRow> digest(List<OutboxRow> rows) {
+        if (digestThreshold <= 1 || rows.size() < digestThreshold) {
+            return rows;
+        }
+        Map<String, List<OutboxRow>> groups = new LinkedHashMap<>();
+        for (OutboxRow row : rows) {
+            groups.computeIfAbsent(row.userId + ":" + row.type, key -> new ArrayList<>()).add(row);
+        }
+        if (groups.size() == rows.size()) {
+            return rows;
+        }
+        List<OutboxRow> result = new ArrayList<>(groups.size());
+        for (List<OutboxRow> group : groups.values()) {
+            if (group.size() < digestThreshold) {
+                result.addAll(group);
+            } else {
+                result.add(OutboxRow.digest(group));
+            }
+        }
+        return result;
+    }
+
+    private static void bind(PreparedStatement ps, OutboxRow row) throws SQLException {
+        ps.setLong(1, row.userId);
+        ps.setString(2, row.type);
+        ps.setString(3, row.title);
+        ps.setString(4, row.body);
+        ps.setObject(5, row.createdAt);
+    }
+
+    private static final class OutboxRow {
+        private static final int MAX_TITLE_LENGTH = 200;
+        private static final int MAX_DIGEST_LINES = 10;
+
+        private final long id;
+        private final long userId;
+        private final String type;
+        private final String title;
+        private final String body;
+        private final OffsetDateTime createdAt;
+
+        private OutboxRow(long id, long userId, String type, String title, String body, OffsetDateTime createdAt) {
+            this.id = id;
+            this.userId = userId;
+            this.type = type;
+            this.title = title;
+            this.body = body;
+            this.createdAt = createdAt;
+        }
+
+        private static OutboxRow digest(List<OutboxRow> group) {
+            OutboxRow first = group.get(0);
+            OutboxRow last = group.get(group.size() - 1);
+            String suffix = " (" + group.size() + ")";
+            String title = first.title.length() + suffix.length() > MAX_TITLE_LENGTH
+                    ? first.title.substring(0, MAX_TITLE_LENGTH - suffix.length()) + suffix
+                    : first.title + suffix;
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < Math.min(group.size(), MAX_DIGEST_LINES); i++) {
+                if (i > 0) {
+                    body.append('\n');
+                }
+                body.append(group.get(i).body);
+            }
+            if (group.size() > MAX_DIGEST_LINES) {
+                body.append("\n...and ").append(group.size() - MAX_DIGEST_LINES).append(" more");
+            }
+            return new OutboxRow(last.id, first.userId, first.type, title, body.toString(), last.createdAt);
+        }
+
+        private NotificationResponse toResponse(Map<String, Object> generatedKeys) {
+            return NotificationResponse.builder()
+                    .id(((Number) generatedKeys.values().iterator().next()).longValue())
+                    .userId(userId)
+                    .type(NotificationType.valueOf(type))
+                    .title(title)
+                    .body(body)
+                    .read(false)
+                    .createdAt(createdAt.toInstant())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package me.devziyad.unipoolbackend.notification;
+
+import jakarta.persistence.*;
+import lombok.*;
+import me.devziyad.unipoolbackend.common.NotificationType;
+
+import java.time.Instant;
+
+/**
+ * A notification written by a business transaction and not yet delivered to {@code notifications}.
+ * Rows are written and drained with plain JDBC by {@link NotificationOutbox}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "notification_outbox", indexes = {
+    @Index(name = "idx_notification_outbox_user_id", columnList = "user_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // No foreign key, so appending never waits on or loads the user row
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationType type;
+
+    @Column(nullable = false, length = 200)
+    private String title;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String body;
+
+    @Column(nullable = false, updatable = false)
+    @Builder.Default
+    private Instant createdAt = Instant.now();
+}
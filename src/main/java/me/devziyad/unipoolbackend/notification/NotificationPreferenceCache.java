@@ -0,0 +1,117 @@
+package me.devziyad.unipoolbackend.notification;
+
+import me.devziyad.unipoolbackend.common.NotificationType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU of the notification types each user has muted, so fan-out can drop muted notifications
+ * before they are queued without a preference query per message. A type is muted when the user has
+ * preferences for it and all of them are disabled.
+ * <p>
+ * Users missing from the cache are loaded together in one query. Preference changes evict the user once
+ * they commit.
+ */
+@Component
+public class NotificationPreferenceCache {
+
+    private final UserNotificationPreferenceRepository preferenceRepository;
+    private final int maxEntries;
+
+    private final LinkedHashMap<Long, Set<NotificationType>> muted = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Bumped on every eviction so a load that raced with a preference change isn't cached
+    private final AtomicLong generation = new AtomicLong();
+
+    public NotificationPreferenceCache(UserNotificationPreferenceRepository preferenceRepository,
+                                       @Value("${notification.preference-cache.max-entries:10000}") int maxEntries) {
+        this.preferenceRepository = preferenceRepository;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the muted types of each of {@code userIds}, empty for users who muted nothing
+     */
+    public Map<Long, Set<NotificationType>> getMutedTypes(Collection<Long> userIds) {
+        Map<Long, Set<NotificationType>> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long loadGeneration;
+        synchronized (this) {
+            for (Long userId : userIds) {
+                Set<NotificationType> types = muted.get(userId);
+                if (types != null) {
+                    result.put(userId, types);
+                } else if (!result.containsKey(userId)) {
+                    missing.add(userId);
+                    result.put(userId, null);
+                }
+            }
+            loadGeneration = generation.get();
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, Set<NotificationType>> loaded = new HashMap<>();
+        for (Long userId : missing) {
+            loaded.put(userId, EnumSet.noneOf(NotificationType.class));
+        }
+        for (MutedNotificationType row : preferenceRepository.findMutedTypes(missing)) {
+            loaded.get(row.getUserId()).add(row.getType());
+        }
+        result.putAll(loaded);
+
+        if (maxEntries > 0) {
+            synchronized (this) {
+                if (generation.get() == loadGeneration) {
+                    muted.putAll(loaded);
+                    Iterator<Set<NotificationType>> eldest = muted.values().iterator();
+                    while (muted.size() > maxEntries && eldest.hasNext()) {
+                        eldest.next();
+                        eldest.remove();
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evicts the user once the current transaction commits, or straight away outside one.
+     */
+    public void invalidate(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId);
+                }
+            });
+        } else {
+            evict(userId);
+        }
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        muted.clear();
+    }
+
+    private synchronized void evict(Long userId) {
+        generation.incrementAndGet();
+        muted.remove(userId);
+    }
+}
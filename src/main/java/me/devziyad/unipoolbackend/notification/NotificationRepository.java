@@ -2,9 +2,15 @@ package me.devziyad.unipoolbackend.notification;
 
 import lombok.NonNull;
 import me.devziyad.unipoolbackend.user.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,4 +24,43 @@ public interface NotificationRepository extends JpaRepository<@NonNull Notificat
 
     @NonNull
     List<@NonNull Notification> findByUserIdAndReadFalse(Long userId);
+
+    // Newest first; with findPageBefore, walks idx_notification_user_created_at without an offset
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId ORDER BY n.createdAt DESC, n.id DESC")
+    @NonNull
+    List<@NonNull Notification> findFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * The page after the notification with {@code createdAt} and {@code id}, newest first.
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.id = :userId " +
+           "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.id < :id)) " +
+           "ORDER BY n.createdAt DESC, n.id DESC")
+    @NonNull
+    List<@NonNull Notification> findPageBefore(@Param("userId") Long userId, @Param("createdAt") Instant createdAt,
+                                               @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT n.id FROM Notification n WHERE n.read = true AND n.createdAt < :cutoff ORDER BY n.id")
+    @NonNull
+    List<@NonNull Long> findReadIdsCreatedBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    long countByUserIdAndReadFalse(Long userId);
+
+    /**
+     * @return 1 if the notification was unread, 0 if it was already read
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true WHERE n.id = :id AND n.read = false")
+    int markAsRead(@Param("id") Long id);
+
+    /**
+     * @return number of notifications that were unread
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Notification n SET n.read = true WHERE n.user.id = :userId AND n.read = false")
+    int markAllAsRead(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package me.devziyad.unipoolbackend.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Deletes read notifications once they are older than {@code read-days}. Rows go in batches of
+ * {@code batch-size}, each in its own transaction, so a large backlog never holds long locks on the table.
+ * Unread notifications are kept however old they are.
+ */
+@Component
+@Slf4j
+public class NotificationRetention {
+
+    private final NotificationRepository notificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration readRetention;
+    private final int batchSize;
+
+    public NotificationRetention(NotificationRepository notificationRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${notification.retention.read-days:30}") long readDays,
+                                 @Value("${notification.retention.batch-size:1000}") int batchSize) {
+        this.notificationRepository = notificationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readRetention = Duration.ofDays(readDays);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "0 15 * * * *") // Run every hour, offset from the other cleanups
+    public void purgeScheduled() {
+        int deleted = purgeReadNotifications(Instant.now().minus(readRetention));
+        log.info("Cleaned up {} old read notifications", deleted);
+    }
+
+    /**
+     * @return number of notifications deleted
+     */
+    public int purgeReadNotifications(Instant cutoff) {
+        int total = 0;
+        int deleted;
+        do {
+            Integer batch = transactionTemplate.execute(status -> {
+                List<Long> ids = notificationRepository.findReadIdsCreatedBefore(cutoff, PageRequest.of(0, batchSize));
+                return ids.isEmpty() ? 0 : notificationRepository.deleteByIdIn(ids);
+            });
+            deleted = batch != null ? batch : 0;
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+}
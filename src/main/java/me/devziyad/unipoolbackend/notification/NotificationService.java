@@ -2,15 +2,21 @@ package me.devziyad.unipoolbackend.notification;
 
 import me.devziyad.unipoolbackend.common.NotificationType;
 import me.devziyad.unipoolbackend.notification.dto.CreateNotificationPreferenceRequest;
+import me.devziyad.unipoolbackend.notification.dto.NotificationMessage;
 import me.devziyad.unipoolbackend.notification.dto.NotificationPreferenceResponse;
 import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
 import me.devziyad.unipoolbackend.notification.dto.UpdateNotificationPreferenceRequest;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 
 public interface NotificationService {
     NotificationResponse createNotification(Long userId, String title, String body, NotificationType type);
-    List<NotificationResponse> getNotificationsForUser(Long userId);
+    void enqueueNotification(Long userId, String title, String body, NotificationType type);
+    void enqueueNotifications(List<NotificationMessage> messages);
+    int sendRideReminders(List<Long> rideIds, Duration leadTime);
+    List<NotificationResponse> getNotificationsForUser(Long userId, Instant beforeCreatedAt, Long beforeId, int limit);
     List<NotificationResponse> getUnreadNotificationsForUser(Long userId);
     Long getUnreadCount(Long userId);
     void markAsRead(Long notificationId, Long userId);
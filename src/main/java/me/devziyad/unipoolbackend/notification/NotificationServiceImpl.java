@@ -1,28 +1,52 @@
 package me.devziyad.unipoolbackend.notification;
 
 import lombok.RequiredArgsConstructor;
+import me.devziyad.unipoolbackend.booking.BookingRepository;
+import me.devziyad.unipoolbackend.booking.BookingRider;
+import me.devziyad.unipoolbackend.common.BookingStatus;
 import me.devziyad.unipoolbackend.common.NotificationType;
+import me.devziyad.unipoolbackend.exception.BusinessException;
 import me.devziyad.unipoolbackend.exception.ForbiddenException;
 import me.devziyad.unipoolbackend.exception.ResourceNotFoundException;
 import me.devziyad.unipoolbackend.notification.dto.CreateNotificationPreferenceRequest;
+import me.devziyad.unipoolbackend.notification.dto.NotificationMessage;
 import me.devziyad.unipoolbackend.notification.dto.NotificationPreferenceResponse;
 import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
 import me.devziyad.unipoolbackend.notification.dto.UpdateNotificationPreferenceRequest;
+import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideRepository;
 import me.devziyad.unipoolbackend.user.User;
 import me.devziyad.unipoolbackend.user.UserRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class NotificationServiceImpl implements NotificationService {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
+    private final RideRepository rideRepository;
+    private final BookingRepository bookingRepository;
     private final UserNotificationPreferenceRepository preferenceRepository;
+    private final NotificationOutbox notificationOutbox;
+    private final NotificationPreferenceCache preferenceCache;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final ApplicationEventPublisher eventPublisher;
 
     private NotificationResponse toResponse(Notification notification) {
         return NotificationResponse.builder()
@@ -50,18 +74,105 @@ public class NotificationServiceImpl implements NotificationService {
                 .read(false)
                 .build();
 
-        return toResponse(notificationRepository.save(notification));
+        NotificationResponse response = toResponse(notificationRepository.save(notification));
+        eventPublisher.publishEvent(new NotificationsDeliveredEvent(List.of(response)));
+        return response;
+    }
+
+    @Override
+    public void enqueueNotification(Long userId, String title, String body, NotificationType type) {
+        enqueueNotifications(List.of(NotificationMessage.builder()
+                .userId(userId)
+                .title(title)
+                .body(body)
+                .type(type)
+                .build()));
+    }
+
+    @Override
+    public void enqueueNotifications(List<NotificationMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        // Muted notifications are dropped here, so they are never written
+        Map<Long, Set<NotificationType>> mutedTypes = preferenceCache.getMutedTypes(
+                messages.stream().map(NotificationMessage::getUserId).collect(Collectors.toSet()));
+        List<NotificationMessage> wanted = messages.stream()
+                .filter(message -> !mutedTypes.get(message.getUserId()).contains(message.getType()))
+                .collect(Collectors.toList());
+        if (!wanted.isEmpty()) {
+            notificationOutbox.appendAll(wanted);
+        }
     }
 
     @Override
-    public List<NotificationResponse> getNotificationsForUser(Long userId) {
-        return notificationRepository.findByUserId(userId).stream()
+    @Transactional
+    public int sendRideReminders(List<Long> rideIds, Duration leadTime) {
+        Instant now = Instant.now();
+        List<Long> claimed = new ArrayList<>();
+        for (Long rideId : rideIds) {
+            // Claims the reminder; a ride fired twice, cancelled or not yet in its window is skipped here
+            if (rideRepository.markReminderSent(rideId, now, now.plus(leadTime)) > 0) {
+                claimed.add(rideId);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+
+        List<Ride> rides = rideRepository.findAllById(claimed);
+        Map<Long, List<Long>> ridersByRide = new HashMap<>();
+        for (BookingRider rider : bookingRepository.findRidersByRideIdInAndStatus(claimed, BookingStatus.CONFIRMED)) {
+            ridersByRide.computeIfAbsent(rider.getRideId(), id -> new ArrayList<>()).add(rider.getRiderId());
+        }
+        List<NotificationMessage> messages = new ArrayList<>();
+        for (Ride ride : rides) {
+            // Rounded up, so a ride leaving in 9.5 minutes is announced as 10
+            long minutes = Math.max(1, (Duration.between(now, ride.getDepartureTimeStart()).toSeconds() + 59) / 60);
+            String body = String.format("Your ride to %s is starting in %d minutes",
+                    ride.getDestinationLocation().getLabel(), minutes);
+            messages.add(reminder(ride.getDriver().getId(), body));
+            for (Long riderId : ridersByRide.getOrDefault(ride.getId(), List.of())) {
+                messages.add(reminder(riderId, body));
+            }
+        }
+        // Written with the reminder markers, so each reminder is queued exactly once
+        enqueueNotifications(messages);
+        return rides.size();
+    }
+
+    private static NotificationMessage reminder(Long userId, String body) {
+        return NotificationMessage.builder()
+                .userId(userId)
+                .title("Ride Starting Soon")
+                .body(body)
+                .type(NotificationType.RIDE_REMINDER)
+                .build();
+    }
+
+    @Override
+    public List<NotificationResponse> getNotificationsForUser(Long userId, Instant beforeCreatedAt, Long beforeId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BusinessException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((beforeCreatedAt == null) != (beforeId == null)) {
+            throw new BusinessException("beforeCreatedAt and beforeId must be given together");
+        }
+        Pageable page = PageRequest.of(0, limit);
+        if (beforeCreatedAt != null) {
+            return notificationRepository.findPageBefore(userId, beforeCreatedAt, beforeId, page).stream()
+                    .map(this::toResponse)
+                    .collect(Collectors.toList());
+        }
+        notificationOutbox.dispatchPendingFor(userId);
+        return notificationRepository.findFirstPage(userId, page).stream()
                 .map(this::toResponse)
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<NotificationResponse> getUnreadNotificationsForUser(Long userId) {
+        notificationOutbox.dispatchPendingFor(userId);
         return notificationRepository.findByUserIdAndReadFalse(userId).stream()
                 .map(this::toResponse)
                 .collect(Collectors.toList());
@@ -69,7 +180,8 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     public Long getUnreadCount(Long userId) {
-        return (long) notificationRepository.findByUserIdAndReadFalse(userId).size();
+        notificationOutbox.dispatchPendingFor(userId);
+        return unreadNotificationCounter.get(userId);
     }
 
     @Override
@@ -82,16 +194,20 @@ public class NotificationServiceImpl implements NotificationService {
             throw new ForbiddenException("You can only mark your own notifications as read");
         }
 
-        notification.setRead(true);
-        notificationRepository.save(notification);
+        // Conditional, so two concurrent reads of one notification only lower the count once
+        if (notificationRepository.markAsRead(notificationId) > 0) {
+            eventPublisher.publishEvent(new UnreadCountChangedEvent(userId, -1));
+        }
     }
 
     @Override
     @Transactional
     public void markAllAsRead(Long userId) {
-        List<Notification> list = notificationRepository.findByUserIdAndReadFalse(userId);
-        list.forEach(n -> n.setRead(true));
-        notificationRepository.saveAll(list);
+        notificationOutbox.dispatchPendingFor(userId);
+        int updated = notificationRepository.markAllAsRead(userId);
+        if (updated > 0) {
+            eventPublisher.publishEvent(new UnreadCountChangedEvent(userId, -updated));
+        }
     }
 
     private NotificationPreferenceResponse toPreferenceResponse(UserNotificationPreference preference) {
@@ -121,6 +237,7 @@ public class NotificationServiceImpl implements NotificationService {
                 .enabled(true)
                 .build();
 
+        preferenceCache.invalidate(userId);
         return toPreferenceResponse(preferenceRepository.save(preference));
     }
 
@@ -166,6 +283,7 @@ public class NotificationServiceImpl implements NotificationService {
             preference.setEnabled(request.getEnabled());
         }
 
+        preferenceCache.invalidate(userId);
         return toPreferenceResponse(preferenceRepository.save(preference));
     }
 
@@ -180,5 +298,6 @@ public class NotificationServiceImpl implements NotificationService {
         }
 
         preferenceRepository.delete(preference);
+        preferenceCache.invalidate(userId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+package me.devziyad.unipoolbackend.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Open server-sent event streams, per user. New notifications and unread-count changes are pushed to every
+ * stream of their user, so clients no longer poll the list and count endpoints.
+ * <p>
+ * Each stream buffers at most {@code buffer-size} events; a client that falls that far behind is
+ * disconnected rather than holding memory, and resynchronises from the unread count it is sent on reconnect.
+ * Heartbeat comments keep idle proxies from closing the connection and surface dead clients, and streams end
+ * after {@code max-duration-minutes} so clients reconnect with a fresh token.
+ */
+@Component
+@Slf4j
+public class NotificationStreamRegistry {
+
+    public static final String NOTIFICATION_EVENT = "notification";
+    public static final String UNREAD_COUNT_EVENT = "unread-count";
+
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final NotificationOutbox notificationOutbox;
+    private final int bufferSize;
+    private final int maxConnectionsPerUser;
+    private final Duration heartbeat;
+    private final Duration maxDuration;
+
+    private final Map<Long, List<Connection>> connections = new ConcurrentHashMap<>();
+
+    public NotificationStreamRegistry(UnreadNotificationCounter unreadNotificationCounter,
+                                      NotificationOutbox notificationOutbox,
+                                      @Value("${notification.stream.buffer-size:256}") int bufferSize,
+                                      @Value("${notification.stream.max-connections-per-user:5}") int maxConnectionsPerUser,
+                                      @Value("${notification.stream.heartbeat-seconds:15}") long heartbeatSeconds,
+                                      @Value("${notification.stream.max-duration-minutes:30}") long maxDurationMinutes) {
+        this.unreadNotificationCounter = unreadNotificationCounter;
+        this.notificationOutbox = notificationOutbox;
+        this.bufferSize = bufferSize;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.heartbeat = Duration.ofSeconds(heartbeatSeconds);
+        this.maxDuration = Duration.ofMinutes(maxDurationMinutes);
+    }
+
+    /**
+     * Opens a stream for {@code userId}. It starts with the current unread count and then carries
+     * {@value #NOTIFICATION_EVENT} and {@value #UNREAD_COUNT_EVENT} events as they happen. Opening more than
+     * {@code max-connections-per-user} streams closes the oldest.
+     */
+    public Flux<ServerSentEvent<Object>> open(Long userId) {
+        return Flux.defer(() -> {
+            Connection connection = register(userId);
+            // Registered before counting, so nothing delivered in between is missed
+            notificationOutbox.dispatchPendingFor(userId);
+            connection.emit(unreadCountEvent(unreadNotificationCounter.get(userId)));
+
+            Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(heartbeat)
+                    .map(tick -> ServerSentEvent.builder().comment("heartbeat").build())
+                    .onBackpressureDrop()
+                    .takeUntilOther(connection.closed.asMono());
+            return Flux.merge(connection.sink.asFlux(), heartbeats)
+                    .take(maxDuration)
+                    .doFinally(signal -> unregister(connection));
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotificationsDelivered(NotificationsDeliveredEvent event) {
+        if (connections.isEmpty()) {
+            return;
+        }
+        Map<Long, List<NotificationResponse>> byUser = new LinkedHashMap<>();
+        for (NotificationResponse notification : event.getNotifications()) {
+            if (connections.containsKey(notification.getUserId())) {
+                byUser.computeIfAbsent(notification.getUserId(), id -> new ArrayList<>()).add(notification);
+            }
+        }
+        byUser.forEach((userId, notifications) -> {
+            for (NotificationResponse notification : notifications) {
+                emit(userId, ServerSentEvent.builder()
+                        .id(String.valueOf(notification.getId()))
+                        .event(NOTIFICATION_EVENT)
+                        .data(notification)
+                        .build());
+            }
+            emit(userId, unreadCountEvent(unreadNotificationCounter.get(userId)));
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUnreadCountChanged(UnreadCountChangedEvent event) {
+        if (connections.containsKey(event.getUserId())) {
+            emit(event.getUserId(), unreadCountEvent(unreadNotificationCounter.get(event.getUserId())));
+        }
+    }
+
+    /**
+     * Closes every open stream, for the admin database reset.
+     */
+    public void closeAll() {
+        connections.values().forEach(list -> list.forEach(Connection::close));
+        connections.clear();
+    }
+
+    private Connection register(Long userId) {
+        Connection connection = new Connection(userId, bufferSize);
+        List<Connection> evicted = new ArrayList<>();
+        connections.compute(userId, (id, list) -> {
+            List<Connection> updated = list != null ? list : new CopyOnWriteArrayList<>();
+            updated.add(connection);
+            while (updated.size() > maxConnectionsPerUser) {
+                evicted.add(updated.remove(0));
+            }
+            return updated;
+        });
+        evicted.forEach(Connection::close);
+        return connection;
+    }
+
+    private void unregister(Connection connection) {
+        connections.computeIfPresent(connection.userId, (id, list) -> {
+            list.remove(connection);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    private void emit(Long userId, ServerSentEvent<Object> event) {
+        List<Connection> list = connections.get(userId);
+        if (list == null) {
+            return;
+        }
+        for (Connection connection : list) {
+            if (!connection.emit(event)) {
+                unregister(connection);
+            }
+        }
+    }
+
+    private static ServerSentEvent<Object> unreadCountEvent(long count) {
+        return ServerSentEvent.builder()
+                .event(UNREAD_COUNT_EVENT)
+                .data(Map.of("count", count))
+                .build();
+    }
+
+    private static final class Connection {
+        private final Long userId;
+        private final Sinks.Many<ServerSentEvent<Object>> sink;
+        // Stops the heartbeats once the sink completes, so the merged stream can complete too
+        private final Sinks.Empty<Void> closed = Sinks.empty();
+
+        private Connection(Long userId, int bufferSize) {
+            this.userId = userId;
+            this.sink = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(bufferSize));
+        }
+
+        /**
+         * @return false once the stream is closed, including when this event overflowed its buffer
+         */
+        private synchronized boolean emit(ServerSentEvent<Object> event) {
+            Sinks.EmitResult result = sink.tryEmitNext(event);
+            if (result.isSuccess()) {
+                return true;
+            }
+            // A full buffer reports FAIL_ZERO_SUBSCRIBER instead of FAIL_OVERFLOW until the client subscribes
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW || result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+                log.debug("Closing notification stream of user {}: client fell too far behind", userId);
+            }
+            close();
+            return false;
+        }
+
+        private synchronized void close() {
+            sink.tryEmitComplete();
+            closed.tryEmitEmpty();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package me.devziyad.unipoolbackend.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
+
+import java.util.List;
+
+/**
+ * Published once notifications are committed to the {@code notifications} table, either by the outbox
+ * dispatcher or by a direct send, so open notification streams can push them.
+ */
+@Getter
+@AllArgsConstructor
+public class NotificationsDeliveredEvent {
+
+    private final List<NotificationResponse> notifications;
+}
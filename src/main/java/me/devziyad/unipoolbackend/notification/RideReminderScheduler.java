@@ -1,15 +1,8 @@
 package me.devziyad.unipoolbackend.notification;
 
 import lombok.RequiredArgsConstructor;
-import me.devziyad.unipoolbackend.booking.Booking;
-import me.devziyad.unipoolbackend.booking.BookingRepository;
-import me.devziyad.unipoolbackend.common.BookingStatus;
-import me.devziyad.unipoolbackend.common.NotificationType;
-import me.devziyad.unipoolbackend.common.RideStatus;
-import me.devziyad.unipoolbackend.ride.Ride;
-import me.devziyad.unipoolbackend.ride.RideRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -18,54 +11,32 @@ import java.util.List;
 
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class RideReminderScheduler {
 
-    private static final Logger logger = LoggerFactory.getLogger(RideReminderScheduler.class);
-    private final RideRepository rideRepository;
-    private final BookingRepository bookingRepository;
+    private final RideReminderTimer rideReminderTimer;
     private final NotificationService notificationService;
 
-    @Scheduled(fixedRate = 600000) // Run every 10 minutes
-    public void sendRideReminders() {
-        logger.info("Running ride reminder scheduler");
-
-        Instant now = Instant.now();
-        Instant tenMinutesFromNow = now.plusSeconds(10 * 60L);
-
-        // Find rides starting in the next 10 minutes
-        List<Ride> upcomingRides = rideRepository.findAll().stream()
-                .filter(ride -> ride.getStatus() == RideStatus.POSTED)
-                .filter(ride -> ride.getDepartureTimeStart().isAfter(now))
-                .filter(ride -> ride.getDepartureTimeStart().isBefore(tenMinutesFromNow))
-                .toList();
-
-        for (Ride ride : upcomingRides) {
-            // Notify driver
-            notificationService.createNotification(
-                    ride.getDriver().getId(),
-                    "Ride Starting Soon",
-                    String.format("Your ride to %s is starting in 10 minutes", 
-                            ride.getDestinationLocation().getLabel()),
-                    NotificationType.RIDE_REMINDER
-            );
-
-            // Notify all passengers
-            List<Booking> bookings = bookingRepository.findByRideId(ride.getId()).stream()
-                    .filter(b -> b.getStatus() == BookingStatus.CONFIRMED)
-                    .toList();
+    @Value("${notification.reminder.batch-size:100}")
+    private int batchSize;
 
-            for (Booking booking : bookings) {
-                notificationService.createNotification(
-                        booking.getRider().getId(),
-                        "Ride Starting Soon",
-                        String.format("Your ride to %s is starting in 10 minutes",
-                                ride.getDestinationLocation().getLabel()),
-                        NotificationType.RIDE_REMINDER
-                );
+    @Scheduled(fixedDelayString = "${notification.reminder.tick-millis:5000}")
+    public void sendRideReminders() {
+        List<Long> due = rideReminderTimer.due(Instant.now());
+        if (due.isEmpty()) {
+            return;
+        }
+        int sent = 0;
+        for (int from = 0; from < due.size(); from += batchSize) {
+            List<Long> batch = due.subList(from, Math.min(from + batchSize, due.size()));
+            try {
+                sent += notificationService.sendRideReminders(batch, rideReminderTimer.getLeadTime());
+            } catch (RuntimeException e) {
+                // Nothing in the batch was marked as sent, so it is safe to fire again
+                log.warn("Failed to send reminders for {} rides, retrying on the next tick", batch.size(), e);
+                batch.forEach(rideReminderTimer::retry);
             }
         }
-
-        logger.info("Processed {} upcoming rides", upcomingRides.size());
+        log.info("Sent reminders for {} of {} due rides", sent, due.size());
     }
 }
-
@@ -0,0 +1,109 @@
+package me.devziyad.unipoolbackend.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.ride.RideChangedEvent;
+import me.devziyad.unipoolbackend.ride.RideDeparture;
+import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.util.TimingWheel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks when departure reminders are due, on an in-memory {@link TimingWheel} of ride ids firing
+ * {@code lead-minutes} before each departure. Only departures within {@code horizon-minutes} are held;
+ * the window is extended every {@code refill-minutes} with a range query on the departure time, and rides
+ * posted inside it are added as they are created.
+ * <p>
+ * A ride may be scheduled more than once, or be cancelled before it fires; the reminder marker on the ride
+ * decides whether a reminder is actually sent.
+ */
+@Component
+@Slf4j
+public class RideReminderTimer {
+
+    private final RideRepository rideRepository;
+    private final Duration leadTime;
+    private final Duration horizon;
+    private final TimingWheel<Long> wheel;
+
+    // Departures up to here are on the wheel or will be added by ride events; null until the first load
+    private volatile Instant loadedUntil;
+
+    public RideReminderTimer(RideRepository rideRepository,
+                             @Value("${notification.reminder.lead-minutes:10}") long leadMinutes,
+                             @Value("${notification.reminder.horizon-minutes:120}") long horizonMinutes,
+                             @Value("${notification.reminder.tick-millis:5000}") long tickMillis,
+                             @Value("${notification.reminder.wheel-size:720}") int wheelSize) {
+        this.rideRepository = rideRepository;
+        this.leadTime = Duration.ofMinutes(leadMinutes);
+        this.horizon = Duration.ofMinutes(horizonMinutes);
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+    }
+
+    public Duration getLeadTime() {
+        return leadTime;
+    }
+
+    /**
+     * @return ids of rides whose reminder came due since the last call
+     */
+    public List<Long> due(Instant now) {
+        return wheel.advance(now.toEpochMilli());
+    }
+
+    /**
+     * Fires the ride again on the next {@link #due} call, for reminders that failed to send.
+     */
+    public void retry(Long rideId) {
+        wheel.schedule(rideId, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        wheel.clear();
+        loadedUntil = null;
+        refill();
+    }
+
+    @Scheduled(fixedDelayString = "${notification.reminder.refill-minutes:30}",
+            initialDelayString = "${notification.reminder.refill-minutes:30}",
+            timeUnit = TimeUnit.MINUTES)
+    public synchronized void refill() {
+        Instant now = Instant.now();
+        Instant from = loadedUntil != null ? loadedUntil : now;
+        Instant to = now.plus(horizon);
+        if (!to.isAfter(from)) {
+            return;
+        }
+        // Extended before querying, so a ride committed while the query runs is still added by its event
+        loadedUntil = to;
+        List<RideDeparture> departures = rideRepository.findReminderCandidates(from, to);
+        for (RideDeparture departure : departures) {
+            schedule(departure.getId(), departure.getDepartureTimeStart());
+        }
+        log.debug("Scheduled reminders for {} rides departing before {}", departures.size(), to);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRideChanged(RideChangedEvent event) {
+        Instant until = loadedUntil;
+        if (until != null && event.getStatus() == RideStatus.POSTED
+                && event.getDepartureTimeStart() != null && !event.getDepartureTimeStart().isAfter(until)) {
+            schedule(event.getRideId(), event.getDepartureTimeStart());
+        }
+    }
+
+    private void schedule(Long rideId, Instant departure) {
+        wheel.schedule(rideId, departure.minus(leadTime).toEpochMilli());
+    }
+}
@@ -0,0 +1,16 @@
+package me.devziyad.unipoolbackend.notification;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a user's notifications are marked as read.
+ */
+@Getter
+@AllArgsConstructor
+public class UnreadCountChangedEvent {
+
+    private final Long userId;
+    // Change in the user's unread count, negative for reads
+    private final long delta;
+}
@@ -0,0 +1,146 @@
+package me.devziyad.unipoolbackend.notification;
+
+import me.devziyad.unipoolbackend.notification.dto.NotificationResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user unread notification counts, held in a bounded LRU and kept current from committed deliveries and
+ * reads. A user who isn't cached is counted once with a COUNT query and then maintained in memory.
+ * <p>
+ * Listeners run ahead of the others, so the notification streams read counts that already include the
+ * change they are pushing.
+ * <p>
+ * A change is in flight from just before its transaction commits until its adjustment has been applied. A COUNT
+ * that overlaps one may or may not include it, so it is returned but not cached; otherwise the adjustment would
+ * be applied to a count that already has it.
+ */
+@Component
+public class UnreadNotificationCounter {
+
+    private final NotificationRepository notificationRepository;
+    private final int maxEntries;
+
+    private final LinkedHashMap<Long, Long> counts = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Bumped when a change starts and ends committing, so a count that raced with a delivery or read isn't cached
+    private final AtomicLong generation = new AtomicLong();
+    // Changes committing whose adjustment hasn't run yet
+    private int inFlight;
+
+    public UnreadNotificationCounter(NotificationRepository notificationRepository,
+                                     @Value("${notification.unread-counter.max-entries:10000}") int maxEntries) {
+        this.notificationRepository = notificationRepository;
+        this.maxEntries = maxEntries;
+    }
+
+    public long get(Long userId) {
+        long countGeneration;
+        synchronized (this) {
+            Long cached = counts.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            countGeneration = inFlight == 0 ? generation.get() : -1;
+        }
+        long count = notificationRepository.countByUserIdAndReadFalse(userId);
+        if (maxEntries > 0 && countGeneration >= 0) {
+            synchronized (this) {
+                if (generation.get() == countGeneration) {
+                    counts.put(userId, count);
+                    Iterator<Long> eldest = counts.values().iterator();
+                    while (counts.size() > maxEntries && eldest.hasNext()) {
+                        eldest.next();
+                        eldest.remove();
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Runs when a change is published, inside its transaction: marks it in flight from before its commit until
+     * after the adjustment listeners below, which run in the same commit with a higher precedence.
+     */
+    @EventListener({NotificationsDeliveredEvent.class, UnreadCountChangedEvent.class})
+    public void onChangePublished() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Nothing to wait for; the adjustment runs straight after this
+            synchronized (this) {
+                generation.incrementAndGet();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean committing;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                synchronized (UnreadNotificationCounter.this) {
+                    committing = true;
+                    inFlight++;
+                    generation.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (UnreadNotificationCounter.this) {
+                    if (committing) {
+                        inFlight--;
+                        generation.incrementAndGet();
+                    }
+                }
+            }
+
+            @Override
+            public int getOrder() {
+                return Ordered.LOWEST_PRECEDENCE;
+            }
+        });
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotificationsDelivered(NotificationsDeliveredEvent event) {
+        Map<Long, Long> added = new HashMap<>();
+        for (NotificationResponse notification : event.getNotifications()) {
+            added.merge(notification.getUserId(), 1L, Long::sum);
+        }
+        synchronized (this) {
+            generation.incrementAndGet();
+            added.forEach(this::adjust);
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUnreadCountChanged(UnreadCountChangedEvent event) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            adjust(event.getUserId(), event.getDelta());
+        }
+    }
+
+    public synchronized void clear() {
+        generation.incrementAndGet();
+        counts.clear();
+    }
+
+    private void adjust(Long userId, long delta) {
+        counts.computeIfPresent(userId, (id, count) -> Math.max(0, count + delta));
+    }
+}
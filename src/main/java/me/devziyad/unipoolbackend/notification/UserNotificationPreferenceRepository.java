@@ -4,9 +4,12 @@ import lombok.NonNull;
 import me.devziyad.unipoolbackend.common.NotificationType;
 import me.devziyad.unipoolbackend.user.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,5 +32,13 @@ public interface UserNotificationPreferenceRepository extends JpaRepository<@Non
 
     @NonNull
     List<@NonNull UserNotificationPreference> findByEnabledTrueAndScheduledTimeIsNotNullAndScheduledTimeBefore(Instant time);
+
+    /**
+     * Types muted by each of {@code userIds}: those with preferences that are all disabled.
+     */
+    @Query("SELECT p.user.id AS userId, p.type AS type FROM UserNotificationPreference p WHERE p.user.id IN :userIds " +
+           "GROUP BY p.user.id, p.type HAVING SUM(CASE WHEN p.enabled = true THEN 1 ELSE 0 END) = 0")
+    @NonNull
+    List<@NonNull MutedNotificationType> findMutedTypes(@Param("userIds") Collection<Long> userIds);
 }
 
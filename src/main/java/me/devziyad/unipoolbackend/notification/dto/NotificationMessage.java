@@ -0,0 +1,18 @@
+package me.devziyad.unipoolbackend.notification.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import me.devziyad.unipoolbackend.common.NotificationType;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationMessage {
+    private Long userId;
+    private String title;
+    private String body;
+    private NotificationType type;
+}
@@ -4,6 +4,7 @@ import jakarta.validation.Valid;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import me.devziyad.unipoolbackend.auth.AuthService;
+import me.devziyad.unipoolbackend.idempotency.IdempotencyStore;
 import me.devziyad.unipoolbackend.payment.dto.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -20,12 +21,16 @@ public class PaymentController {
 
     private final PaymentService paymentService;
     private final AuthService authService;
+    private final IdempotencyStore idempotencyStore;
 
     @PostMapping("/initiate")
-    public ResponseEntity<@NonNull PaymentResponse> initiatePayment(@Valid @RequestBody InitiatePaymentRequest request) {
+    public ResponseEntity<@NonNull PaymentResponse> initiatePayment(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody InitiatePaymentRequest request) {
         Long payerId = authService.getCurrentUser().getId();
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(paymentService.initiatePayment(request, payerId));
+        return idempotencyStore.execute(idempotencyKey, payerId, "POST /api/payments/initiate", request,
+                PaymentResponse.class, () -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(paymentService.initiatePayment(request, payerId)));
     }
 
     @GetMapping("/{id}")
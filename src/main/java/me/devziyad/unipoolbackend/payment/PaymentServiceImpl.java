@@ -81,6 +81,10 @@ public class PaymentServiceImpl implements PaymentService {
             throw new BusinessException("Cannot pay for cancelled booking");
         }
 
+        if (booking.getStatus() == me.devziyad.unipoolbackend.common.BookingStatus.WAITLISTED) {
+            throw new BusinessException("Cannot pay for a waitlisted booking");
+        }
+
         // Check if payment already exists
         paymentRepository.findByBookingId(request.getBookingId())
                 .stream()
@@ -149,7 +153,7 @@ public class PaymentServiceImpl implements PaymentService {
             userRepository.save(driver);
 
             // Create notification
-            notificationService.createNotification(
+            notificationService.enqueueNotification(
                     driver.getId(),
                     "Payment Received",
                     String.format("You received %s from %s", amount, payer.getFullName()),
@@ -210,7 +214,7 @@ public class PaymentServiceImpl implements PaymentService {
         auditService.logAction(ActionType.PAYMENT_COMPLETE, payment.getPayer().getId(), metadata, getCurrentRequest());
 
         // Create notification
-        notificationService.createNotification(
+        notificationService.enqueueNotification(
                 driver.getId(),
                 "Payment Received",
                 String.format("You received %s from %s", payment.getAmount(), payment.getPayer().getFullName()),
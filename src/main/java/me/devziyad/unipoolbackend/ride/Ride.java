@@ -6,6 +6,8 @@ import me.devziyad.unipoolbackend.common.RideStatus;
 import me.devziyad.unipoolbackend.location.Location;
 import me.devziyad.unipoolbackend.user.User;
 import me.devziyad.unipoolbackend.vehicle.Vehicle;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -15,13 +17,17 @@ import java.time.Instant;
     @Index(name = "idx_ride_driver_id", columnList = "driver_id"),
     @Index(name = "idx_ride_status", columnList = "status"),
     @Index(name = "idx_ride_departure_time_start", columnList = "departureTimeStart"),
-    @Index(name = "idx_ride_departure_time_end", columnList = "departureTimeEnd")
+    @Index(name = "idx_ride_departure_time_end", columnList = "departureTimeEnd"),
+    @Index(name = "idx_ride_status_departure_time_start", columnList = "status, departureTimeStart")
 })
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+// Seat counts are changed with conditional UPDATEs in RideRepository; only writing dirty columns
+// keeps an unrelated save from overwriting them with a stale value
+@DynamicUpdate
 public class Ride {
 
     @Id
@@ -81,10 +87,19 @@ public class Ride {
     @Builder.Default
     private Instant createdAt = Instant.now();
 
+    // Set when the departure reminder goes out; the conditional update in RideRepository makes it exactly once
+    private Instant reminderSentAt;
+
     @ManyToOne
     @JoinColumn(name = "route_id")
     private me.devziyad.unipoolbackend.route.Route route;
 
+    // Changes whenever the ride or its bookings change; the seat UPDATEs in RideRepository bump it explicitly.
+    // Exposed to clients as the ride's ETag
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+
     @OneToMany(mappedBy = "ride", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @Builder.Default
     private java.util.List<me.devziyad.unipoolbackend.booking.Booking> bookings = new java.util.ArrayList<>();
@@ -0,0 +1,54 @@
+package me.devziyad.unipoolbackend.ride;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import me.devziyad.unipoolbackend.common.RideStatus;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Snapshot of a ride published whenever it is created, updated, cancelled or completed,
+ * or when a booking changes its seats or passenger list.
+ * Listeners receive plain values so they never touch a detached entity after commit.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class RideChangedEvent {
+
+    private final Long rideId;
+    private final Long driverId;
+    private final Long routeId;
+    private final RideStatus status;
+    private final Long pickupLocationId;
+    private final Long destinationLocationId;
+    private final double pickupLatitude;
+    private final double pickupLongitude;
+    private final double destinationLatitude;
+    private final double destinationLongitude;
+    private final Instant departureTimeStart;
+    private final Instant departureTimeEnd;
+    private final Integer availableSeats;
+    private final BigDecimal pricePerSeat;
+
+    public static RideChangedEvent of(Ride ride) {
+        return RideChangedEvent.builder()
+                .rideId(ride.getId())
+                .driverId(ride.getDriver().getId())
+                .routeId(ride.getRoute() != null ? ride.getRoute().getId() : null)
+                .status(ride.getStatus())
+                .pickupLocationId(ride.getPickupLocation().getId())
+                .destinationLocationId(ride.getDestinationLocation().getId())
+                .pickupLatitude(ride.getPickupLocation().getLatitude())
+                .pickupLongitude(ride.getPickupLocation().getLongitude())
+                .destinationLatitude(ride.getDestinationLocation().getLatitude())
+                .destinationLongitude(ride.getDestinationLocation().getLongitude())
+                .departureTimeStart(ride.getDepartureTimeStart())
+                .departureTimeEnd(ride.getDepartureTimeEnd())
+                .availableSeats(ride.getAvailableSeats())
+                .pricePerSeat(ride.getPricePerSeat())
+                .build();
+    }
+}
@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import me.devziyad.unipoolbackend.auth.AuthService;
 import me.devziyad.unipoolbackend.common.RideStatus;
 import me.devziyad.unipoolbackend.ride.dto.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -29,8 +30,22 @@ public class RideController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<@NonNull RideResponse> getRide(@PathVariable Long id) {
-        return ResponseEntity.ok(rideService.getRideById(id));
+    public ResponseEntity<@NonNull RideResponse> getRide(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // A version lookup is enough to answer a client whose copy is current, without loading the passengers
+        if (ifNoneMatch != null) {
+            String version = String.valueOf(rideService.getRideVersion(id));
+            for (String tag : ifNoneMatch.split(",")) {
+                if (tag.trim().replace("W/", "").replace("\"", "").equals(version)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(version).build();
+                }
+            }
+        }
+        RideResponse ride = rideService.getRideById(id);
+        return ResponseEntity.ok()
+                .eTag(String.valueOf(ride.getVersion()))
+                .body(ride);
     }
 
     @PostMapping("/search")
@@ -39,13 +54,22 @@ public class RideController {
     }
 
     @GetMapping("/driver/{driverId}")
-    public ResponseEntity<@NonNull List<@NonNull RideResponse>> getRidesByDriver(@PathVariable Long driverId) {
+    public ResponseEntity<@NonNull List<@NonNull RideResponse>> getRidesByDriver(
+            @PathVariable Long driverId,
+            @RequestParam(required = false, defaultValue = "false") boolean summary) {
+        if (summary) {
+            return ResponseEntity.ok(rideService.getRideSummariesByDriver(driverId));
+        }
         return ResponseEntity.ok(rideService.getRidesByDriver(driverId));
     }
 
     @GetMapping("/me/driver")
-    public ResponseEntity<@NonNull List<@NonNull RideResponse>> getMyRidesAsDriver() {
+    public ResponseEntity<@NonNull List<@NonNull RideResponse>> getMyRidesAsDriver(
+            @RequestParam(required = false, defaultValue = "false") boolean summary) {
         Long driverId = authService.getCurrentUser().getId();
+        if (summary) {
+            return ResponseEntity.ok(rideService.getRideSummariesByDriver(driverId));
+        }
         return ResponseEntity.ok(rideService.getMyRidesAsDriver(driverId));
     }
 
@@ -0,0 +1,13 @@
+package me.devziyad.unipoolbackend.ride;
+
+/**
+ * Scalar projection of a ride's endpoints, used to warm the search indexes without loading entities.
+ */
+public interface RideCoordinates {
+    Long getId();
+    Double getPickupLatitude();
+    Double getPickupLongitude();
+    Double getDestinationLatitude();
+    Double getDestinationLongitude();
+    Long getRouteId();
+}
@@ -0,0 +1,201 @@
+package me.devziyad.unipoolbackend.ride;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.route.RouteChangedEvent;
+import me.devziyad.unipoolbackend.route.RouteGeometry;
+import me.devziyad.unipoolbackend.route.RouteGeometryCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Segment-level grid index over the simplified route geometry of POSTED rides. Each route segment
+ * is registered in the cells it passes through, so a corridor lookup only examines rides
+ * with a segment near the rider's pickup. Rides without a route use the straight pickup-to-destination line.
+ */
+@Component
+@Slf4j
+public class RideCorridorIndex {
+
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private final RideRepository rideRepository;
+    private final RouteGeometryCache routeGeometryCache;
+    private final double cellSizeDegrees;
+
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+    private final Map<Long, IndexedRide> rides = new ConcurrentHashMap<>();
+
+    public RideCorridorIndex(RideRepository rideRepository, RouteGeometryCache routeGeometryCache,
+                             @Value("${ride.search.corridor.cell-size-degrees:0.01}") double cellSizeDegrees) {
+        this.rideRepository = rideRepository;
+        this.routeGeometryCache = routeGeometryCache;
+        this.cellSizeDegrees = cellSizeDegrees;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<RideCoordinates> posted = rideRepository.findCoordinatesByStatus(RideStatus.POSTED);
+        Map<Long, RouteGeometry> geometries = routeGeometryCache.getAll(posted.stream()
+                .map(RideCoordinates::getRouteId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+
+        synchronized (this) {
+            cells.clear();
+            rides.clear();
+            for (RideCoordinates ride : posted) {
+                RouteGeometry geometry = ride.getRouteId() != null ? geometries.get(ride.getRouteId()) : null;
+                put(ride.getId(), ride.getRouteId(), geometry != null ? geometry : RouteGeometry.straightLine(
+                        ride.getPickupLatitude(), ride.getPickupLongitude(),
+                        ride.getDestinationLatitude(), ride.getDestinationLongitude()));
+            }
+        }
+        log.info("Ride corridor index built with {} posted rides", rides.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRideChanged(RideChangedEvent event) {
+        if (event.getStatus() != RideStatus.POSTED) {
+            remove(event.getRideId());
+            return;
+        }
+        IndexedRide current = rides.get(event.getRideId());
+        if (current != null && Objects.equals(current.routeId, event.getRouteId()) && event.getRouteId() != null) {
+            // Seat or price change; the geometry is unchanged
+            return;
+        }
+        RouteGeometry geometry = event.getRouteId() != null ? routeGeometryCache.get(event.getRouteId()) : null;
+        put(event.getRideId(), event.getRouteId(), geometry != null ? geometry : RouteGeometry.straightLine(
+                event.getPickupLatitude(), event.getPickupLongitude(),
+                event.getDestinationLatitude(), event.getDestinationLongitude()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        List<Long> affected = rides.entrySet().stream()
+                .filter(e -> event.getRouteId().equals(e.getValue().routeId))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        if (affected.isEmpty()) {
+            return;
+        }
+        RouteGeometry geometry = routeGeometryCache.get(event.getRouteId());
+        if (geometry == null) {
+            return;
+        }
+        for (Long rideId : affected) {
+            put(rideId, event.getRouteId(), geometry);
+        }
+    }
+
+    public synchronized void put(Long rideId, Long routeId, RouteGeometry geometry) {
+        remove(rideId);
+        IndexedRide indexed = new IndexedRide(routeId, geometry);
+        for (int s = 0; s < geometry.segmentCount(); s++) {
+            // Sample every half cell so each point of the segment is at most one cell away from a registered cell
+            double dLat = geometry.latitude(s + 1) - geometry.latitude(s);
+            double dLon = geometry.longitude(s + 1) - geometry.longitude(s);
+            int steps = Math.max(1, (int) Math.ceil(Math.max(Math.abs(dLat), Math.abs(dLon)) / (cellSizeDegrees / 2)));
+            for (int i = 0; i <= steps; i++) {
+                double t = (double) i / steps;
+                long key = key(index(geometry.latitude(s) + t * dLat), index(geometry.longitude(s) + t * dLon));
+                if (indexed.cells.add(key)) {
+                    cells.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(rideId);
+                }
+            }
+        }
+        rides.put(rideId, indexed);
+    }
+
+    public synchronized void remove(Long rideId) {
+        IndexedRide indexed = rides.remove(rideId);
+        if (indexed == null) {
+            return;
+        }
+        for (long key : indexed.cells) {
+            Set<Long> ids = cells.get(key);
+            if (ids != null) {
+                ids.remove(rideId);
+                if (ids.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Ride ids whose route passes within {@code radiusKm} of the pickup and then, further along
+     * the route, within {@code radiusKm} of the dropoff.
+     */
+    public Set<Long> match(double pickupLat, double pickupLon, double dropoffLat, double dropoffLon, double radiusKm) {
+        Set<Long> result = new HashSet<>();
+        for (Long rideId : candidates(pickupLat, pickupLon, radiusKm)) {
+            IndexedRide indexed = rides.get(rideId);
+            if (indexed == null) {
+                continue;
+            }
+            RouteGeometry.Projection pickup = indexed.geometry.project(pickupLat, pickupLon);
+            if (pickup.getDistanceKm() > radiusKm) {
+                continue;
+            }
+            // Only the part of the route after the pickup can serve the dropoff
+            RouteGeometry.Projection dropoff = indexed.geometry.project(dropoffLat, dropoffLon,
+                    pickup.getSegment(), indexed.geometry.segmentCount() - 1);
+            if (dropoff.getDistanceKm() <= radiusKm && dropoff.getAlongKm() > pickup.getAlongKm()) {
+                result.add(rideId);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return rides.size();
+    }
+
+    private Set<Long> candidates(double lat, double lon, double radiusKm) {
+        double latSpan = radiusKm / KM_PER_DEGREE_LAT;
+        double lonSpan = radiusKm / (KM_PER_DEGREE_LAT * Math.max(Math.cos(Math.toRadians(lat)), 0.01));
+        Set<Long> result = new HashSet<>();
+        // One extra ring of cells covers segments registered only through their sampled neighbours
+        for (int latIdx = index(lat - latSpan) - 1; latIdx <= index(lat + latSpan) + 1; latIdx++) {
+            for (int lonIdx = index(lon - lonSpan) - 1; lonIdx <= index(lon + lonSpan) + 1; lonIdx++) {
+                Set<Long> ids = cells.get(key(latIdx, lonIdx));
+                if (ids != null) {
+                    result.addAll(ids);
+                }
+            }
+        }
+        return result;
+    }
+
+    private int index(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long key(int latIdx, int lonIdx) {
+        return ((long) latIdx << 32) | (lonIdx & 0xffffffffL);
+    }
+
+    private static final class IndexedRide {
+        private final Long routeId;
+        private final RouteGeometry geometry;
+        private final Set<Long> cells = new HashSet<>();
+
+        private IndexedRide(Long routeId, RouteGeometry geometry) {
+            this.routeId = routeId;
+            this.geometry = geometry;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package me.devziyad.unipoolbackend.ride;
+
+import java.time.Instant;
+
+/**
+ * Scalar projection of a ride's departure, used to seed the reminder timer without loading entities.
+ */
+public interface RideDeparture {
+    Long getId();
+    Instant getDepartureTimeStart();
+}
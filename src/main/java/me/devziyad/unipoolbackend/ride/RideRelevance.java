@@ -0,0 +1,117 @@
+package me.devziyad.unipoolbackend.ride;
+
+import me.devziyad.unipoolbackend.location.Location;
+import me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest;
+import me.devziyad.unipoolbackend.util.DistanceUtil;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Relevance score for ride search: pickup offset + destination offset (km) plus the gap between
+ * the requested and the ride's departure time, weighted as km per hour. Lower is better.
+ */
+final class RideRelevance {
+
+    // One hour of departure difference costs as much as walking this far to the pickup
+    private static final double TIME_GAP_KM_PER_HOUR = 2.0;
+
+    private final SearchRidesRequest request;
+    private final double pickupRadiusKm;
+    private final double destinationRadiusKm;
+    private final Instant preferredDeparture;
+
+    RideRelevance(SearchRidesRequest request, double pickupRadiusKm, double destinationRadiusKm, Instant now) {
+        this.request = request;
+        this.pickupRadiusKm = pickupRadiusKm;
+        this.destinationRadiusKm = destinationRadiusKm;
+        this.preferredDeparture = request.getDepartureTimeFrom() != null ? request.getDepartureTimeFrom() : now;
+    }
+
+    /**
+     * The k best-scoring rides in ascending score order, using a bounded max-heap so only k
+     * rides are ever held and ordered instead of sorting every match. Pickup and destination
+     * offsets are computed for the whole candidate list at once on primitive arrays; rides outside
+     * a radius' bounding box are rejected before any trigonometry.
+     */
+    List<Ride> top(List<Ride> rides, int k) {
+        double[] pickupOffsets = request.getPickupLocationId() == null
+                && request.getPickupLatitude() != null && request.getPickupLongitude() != null
+                ? offsets(rides, true, request.getPickupLatitude(), request.getPickupLongitude(), pickupRadiusKm)
+                : null;
+        double[] destinationOffsets = request.getDestinationLocationId() == null
+                && request.getDestinationLatitude() != null && request.getDestinationLongitude() != null
+                ? offsets(rides, false, request.getDestinationLatitude(), request.getDestinationLongitude(),
+                        destinationRadiusKm)
+                : null;
+
+        Comparator<Scored> byScore = Comparator.<Scored>comparingDouble(s -> s.score)
+                .thenComparing(s -> s.ride.getId());
+        PriorityQueue<Scored> heap = new PriorityQueue<>(k + 1, byScore.reversed());
+
+        for (int i = 0; i < rides.size(); i++) {
+            double score = score(rides.get(i),
+                    pickupOffsets != null ? pickupOffsets[i] : 0,
+                    destinationOffsets != null ? destinationOffsets[i] : 0);
+            if (score == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            Scored candidate = new Scored(rides.get(i), score);
+            if (heap.size() < k) {
+                heap.add(candidate);
+            } else if (byScore.compare(candidate, heap.peek()) < 0) {
+                // Better than the worst of the current top k
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        List<Scored> best = new ArrayList<>(heap);
+        best.sort(byScore);
+        List<Ride> result = new ArrayList<>(best.size());
+        for (Scored scored : best) {
+            result.add(scored.ride);
+        }
+        return result;
+    }
+
+    /**
+     * @return the score, or {@link Double#POSITIVE_INFINITY} if an endpoint lies outside its search radius
+     */
+    private double score(Ride ride, double pickupOffset, double destinationOffset) {
+        if (pickupOffset > pickupRadiusKm || destinationOffset > destinationRadiusKm) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double gapHours = Math.abs(ride.getDepartureTimeStart().toEpochMilli() - preferredDeparture.toEpochMilli()) / 3_600_000.0;
+        return pickupOffset + destinationOffset + gapHours * TIME_GAP_KM_PER_HOUR;
+    }
+
+    /**
+     * @return each ride's offset in km, or {@link Double#POSITIVE_INFINITY} beyond {@code radiusKm}
+     */
+    private static double[] offsets(List<Ride> rides, boolean pickup, double lat, double lon, double radiusKm) {
+        double[] lats = new double[rides.size()];
+        double[] lons = new double[rides.size()];
+        for (int i = 0; i < rides.size(); i++) {
+            Location location = pickup ? rides.get(i).getPickupLocation() : rides.get(i).getDestinationLocation();
+            lats[i] = location.getLatitude();
+            lons[i] = location.getLongitude();
+        }
+        double[] out = new double[rides.size()];
+        DistanceUtil.distancesWithinRadius(lat, lon, lats, lons, radiusKm, out);
+        return out;
+    }
+
+    private static final class Scored {
+        private final Ride ride;
+        private final double score;
+
+        private Scored(Ride ride, double score) {
+            this.ride = ride;
+            this.score = score;
+        }
+    }
+}
@@ -7,22 +7,109 @@ import me.devziyad.unipoolbackend.location.Location;
 import me.devziyad.unipoolbackend.user.User;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RideRepository extends JpaRepository<@NonNull Ride, @NonNull Long> {
-    
+public interface RideRepository extends JpaRepository<@NonNull Ride, @NonNull Long>, JpaSpecificationExecutor<@NonNull Ride>,
+        RideSearchRepository {
+
+    String SUMMARY_SELECT = "SELECT r.id AS rideId, d.id AS driverId, d.fullName AS driverName, d.avgRatingAsDriver AS driverRating, " +
+            "v.id AS vehicleId, v.make AS vehicleMake, v.model AS vehicleModel, v.plateNumber AS vehiclePlateNumber, " +
+            "v.seatCount AS vehicleSeatCount, v.type AS vehicleType, " +
+            "p.id AS pickupLocationId, p.label AS pickupLocationLabel, p.latitude AS pickupLatitude, p.longitude AS pickupLongitude, " +
+            "dl.id AS destinationLocationId, dl.label AS destinationLocationLabel, " +
+            "dl.latitude AS destinationLatitude, dl.longitude AS destinationLongitude, " +
+            "r.departureTimeStart AS departureTimeStart, r.departureTimeEnd AS departureTimeEnd, " +
+            "r.totalSeats AS totalSeats, r.availableSeats AS availableSeats, r.estimatedDistanceKm AS estimatedDistanceKm, " +
+            "r.routeDistanceKm AS routeDistanceKm, r.estimatedDurationMinutes AS estimatedDurationMinutes, " +
+            "r.basePrice AS basePrice, r.pricePerSeat AS pricePerSeat, r.status AS status, r.createdAt AS createdAt, " +
+            "rt.id AS routeId, r.version AS version " +
+            "FROM Ride r JOIN r.driver d JOIN r.vehicle v JOIN r.pickupLocation p JOIN r.destinationLocation dl " +
+            "LEFT JOIN r.route rt ";
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT r FROM Ride r WHERE r.id = :id")
     Optional<Ride> findByIdWithLock(@Param("id") Long id);
 
+    /**
+     * Takes {@code seats} from the ride in a single conditional UPDATE. The ride's row stays locked until the
+     * transaction commits, so callers should run this as their last write. Clears the persistence context,
+     * so entities loaded before the call are detached.
+     *
+     * @return 1 if the seats were reserved, 0 if the ride does not have that many seats left
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Ride r SET r.availableSeats = r.availableSeats - :seats, r.version = r.version + 1 WHERE r.id = :id AND r.availableSeats >= :seats")
+    int reserveSeats(@Param("id") Long id, @Param("seats") int seats);
+
+    /**
+     * Returns {@code seats} to the ride, never beyond its total.
+     *
+     * @return 1 if the seats were returned, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Ride r SET r.availableSeats = r.availableSeats + :seats, r.version = r.version + 1 WHERE r.id = :id AND r.availableSeats + :seats <= r.totalSeats")
+    int releaseSeats(@Param("id") Long id, @Param("seats") int seats);
+
+    /**
+     * Changes the ride's total seats, shifting available seats by the same amount, unless more seats
+     * than the new total are already taken.
+     *
+     * @return 1 if the ride was resized, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Ride r SET r.availableSeats = r.availableSeats + :totalSeats - r.totalSeats, r.totalSeats = :totalSeats, " +
+           "r.version = r.version + 1 " +
+           "WHERE r.id = :id AND r.totalSeats - r.availableSeats <= :totalSeats")
+    int resizeSeats(@Param("id") Long id, @Param("totalSeats") int totalSeats);
+
+    /**
+     * Bumps the ride's version for a booking change that doesn't touch its seats, such as a new pending booking.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Ride r SET r.version = r.version + 1 WHERE r.id = :id")
+    int bumpVersion(@Param("id") Long id);
+
+    /**
+     * Marks the ride's departure reminder as sent, if it hasn't been and the ride is still POSTED and departs
+     * between {@code now} and {@code windowEnd}. Bumps the version so a stale copy of the ride can't be saved
+     * over the marker.
+     *
+     * @return 1 if the caller should send the reminder, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Ride r SET r.reminderSentAt = :now, r.version = r.version + 1 " +
+           "WHERE r.id = :id AND r.reminderSentAt IS NULL AND r.status = 'POSTED' " +
+           "AND r.departureTimeStart > :now AND r.departureTimeStart <= :windowEnd")
+    int markReminderSent(@Param("id") Long id, @Param("now") Instant now, @Param("windowEnd") Instant windowEnd);
+
+    // Range scan on idx_ride_status_departure_time_start
+    @Query("SELECT r.id AS id, r.departureTimeStart AS departureTimeStart FROM Ride r " +
+           "WHERE r.status = 'POSTED' AND r.reminderSentAt IS NULL " +
+           "AND r.departureTimeStart > :from AND r.departureTimeStart <= :to")
+    @NonNull
+    List<@NonNull RideDeparture> findReminderCandidates(@Param("from") Instant from, @Param("to") Instant to);
+
+    // Plain load without the booking graph that findById fetches
+    @Query("SELECT r FROM Ride r WHERE r.id = :id")
+    Optional<Ride> findByIdWithoutBookings(@Param("id") Long id);
+
+    @Query("SELECT r.driver.id FROM Ride r WHERE r.id = :id")
+    Optional<Long> findDriverIdById(@Param("id") Long id);
+
+    @Query("SELECT r.version FROM Ride r WHERE r.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
     @Query("SELECT r FROM Ride r WHERE r.departureTimeStart >= :from AND r.departureTimeStart <= :to")
     @NonNull
     List<@NonNull Ride> findByDepartureTimeBetween(@Param("from") Instant from, @Param("to") Instant to);
@@ -68,8 +155,28 @@ public interface RideRepository extends JpaRepository<@NonNull Ride, @NonNull Lo
     @NonNull
     List<@NonNull Ride> findByDriverIdWithBookings(@Param("driverId") Long driverId);
 
+    @Query(SUMMARY_SELECT + "WHERE d.id = :driverId")
+    @NonNull
+    List<@NonNull RideSummary> findSummariesByDriverId(@Param("driverId") Long driverId);
+
+    @Query(SUMMARY_SELECT + "WHERE r.id IN :ids")
+    @NonNull
+    List<@NonNull RideSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
     @EntityGraph(attributePaths = {"bookings", "bookings.rider", "bookings.pickupLocation", "bookings.dropoffLocation"})
     @Query("SELECT r FROM Ride r WHERE r.availableSeats >= :minSeats AND r.status = 'POSTED'")
     @NonNull
     List<@NonNull Ride> findAvailableRidesWithBookings(@Param("minSeats") Integer minSeats);
-}
\ No newline at end of file
+
+    @EntityGraph(attributePaths = {"bookings", "bookings.rider", "bookings.pickupLocation", "bookings.dropoffLocation"})
+    @Query("SELECT r FROM Ride r WHERE r.id IN :ids")
+    @NonNull
+    List<@NonNull Ride> findWithBookingsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT r.id AS id, r.pickupLocation.latitude AS pickupLatitude, r.pickupLocation.longitude AS pickupLongitude, " +
+           "r.destinationLocation.latitude AS destinationLatitude, r.destinationLocation.longitude AS destinationLongitude, " +
+           "rt.id AS routeId " +
+           "FROM Ride r LEFT JOIN r.route rt WHERE r.status = :status")
+    @NonNull
+    List<@NonNull RideCoordinates> findCoordinatesByStatus(@Param("status") RideStatus status);
+}
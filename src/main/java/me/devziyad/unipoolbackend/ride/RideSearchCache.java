@@ -0,0 +1,282 @@
+package me.devziyad.unipoolbackend.ride;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.ride.dto.RideResponse;
+import me.devziyad.unipoolbackend.ride.dto.SearchCacheStatsResponse;
+import me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest;
+import me.devziyad.unipoolbackend.route.RouteChangedEvent;
+import me.devziyad.unipoolbackend.util.DistanceUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded LRU cache of ride search results. Requests are keyed on their exact coordinates, radii,
+ * departure times, seats, price and paging: results near a radius or time edge differ for requests only
+ * a few metres or seconds apart, so only repeats of the same search share an entry.
+ * A ride change evicts only the searches that returned that ride (every page of them) or whose filters
+ * the ride now matches.
+ */
+@Component
+@Slf4j
+public class RideSearchCache {
+
+    // The search query and DistanceUtil round differently; a ride this close to the edge counts as a match
+    private static final double EDGE_SLACK_KM = 0.001;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Bumped on every invalidation so a search that raced with a ride change doesn't cache stale results
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RideSearchCache(@Value("${ride.search.cache.max-entries:500}") int maxEntries,
+                           @Value("${ride.search.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * @return cached results for an equivalent request, or null on a miss
+     */
+    public List<RideResponse> get(SearchRidesRequest request) {
+        if (maxEntries <= 0) {
+            return null;
+        }
+        Key key = Key.of(request);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.createdAt <= ttlMillis) {
+                hits.increment();
+                return new ArrayList<>(entry.results);
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Generation to pass back to {@link #put} once the search has run.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public void put(SearchRidesRequest request, List<RideResponse> results, long searchGeneration) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        Entry entry = new Entry(request, results);
+        synchronized (this) {
+            if (generation.get() != searchGeneration) {
+                // A ride changed while this search ran; its results may already be stale
+                return;
+            }
+            entries.put(Key.of(request), entry);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRideChanged(RideChangedEvent event) {
+        int removed = 0;
+        synchronized (this) {
+            generation.incrementAndGet();
+            // A ride leaving one page shifts every later page of the same search, so drop them all
+            Set<Key> shiftedSearches = new HashSet<>();
+            for (Entry entry : entries.values()) {
+                if (entry.rideIds.contains(event.getRideId())) {
+                    shiftedSearches.add(entry.filterKey);
+                }
+            }
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (shiftedSearches.contains(entry.filterKey) || mayMatch(entry.request, event)) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            invalidations.add(removed);
+            log.debug("Ride {} changed, invalidated {} cached searches", event.getRideId(), removed);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        int removed = 0;
+        synchronized (this) {
+            generation.incrementAndGet();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().request.getCorridorRadiusMeters() != null) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        invalidations.add(removed);
+    }
+
+    public void invalidateAll() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            invalidations.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    public SearchCacheStatsResponse stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        long lookups = hitCount + missCount;
+        return SearchCacheStatsResponse.builder()
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRate(lookups == 0 ? 0.0 : (double) hitCount / lookups)
+                .evictions(evictions.sum())
+                .invalidations(invalidations.sum())
+                .size(size)
+                .maxEntries(maxEntries)
+                .build();
+    }
+
+    /**
+     * Whether the changed ride could now appear in the results of a cached request.
+     * Errs towards true; a spurious invalidation only costs one extra query.
+     */
+    private boolean mayMatch(SearchRidesRequest request, RideChangedEvent ride) {
+        if (ride.getStatus() != RideStatus.POSTED) {
+            return false;
+        }
+        int minSeats = request.getMinAvailableSeats() != null ? request.getMinAvailableSeats() : 1;
+        if (ride.getAvailableSeats() == null || ride.getAvailableSeats() < minSeats) {
+            return false;
+        }
+        if (request.getMaxPrice() != null && ride.getPricePerSeat() != null
+                && ride.getPricePerSeat().compareTo(request.getMaxPrice()) > 0) {
+            return false;
+        }
+        if (request.getDepartureTimeTo() != null && ride.getDepartureTimeStart() != null
+                && !ride.getDepartureTimeStart().isBefore(request.getDepartureTimeTo())) {
+            return false;
+        }
+        if (request.getDepartureTimeFrom() != null && ride.getDepartureTimeEnd() != null
+                && !ride.getDepartureTimeEnd().isAfter(request.getDepartureTimeFrom())) {
+            return false;
+        }
+        if (request.getCorridorRadiusMeters() != null) {
+            // Corridor matches depend on route geometry, which the event doesn't carry
+            return true;
+        }
+        return endpointMayMatch(request.getPickupLocationId(), request.getPickupLatitude(),
+                        request.getPickupLongitude(), request.getPickupRadiusKm(),
+                        ride.getPickupLocationId(), ride.getPickupLatitude(), ride.getPickupLongitude())
+                && endpointMayMatch(request.getDestinationLocationId(), request.getDestinationLatitude(),
+                        request.getDestinationLongitude(), request.getDestinationRadiusKm(),
+                        ride.getDestinationLocationId(), ride.getDestinationLatitude(), ride.getDestinationLongitude());
+    }
+
+    private boolean endpointMayMatch(Long locationId, Double lat, Double lon, Double radiusKm,
+                                     Long rideLocationId, double rideLat, double rideLon) {
+        if (locationId != null) {
+            return locationId.equals(rideLocationId);
+        }
+        if (lat == null || lon == null) {
+            return true;
+        }
+        double radius = (radiusKm != null ? radiusKm : 5.0) + EDGE_SLACK_KM;
+        return DistanceUtil.isWithinRadius(lat, lon, rideLat, rideLon, radius);
+    }
+
+    private static final class Entry {
+        private final SearchRidesRequest request;
+        private final Key filterKey;
+        private final List<RideResponse> results;
+        private final Set<Long> rideIds;
+        private final long createdAt = System.currentTimeMillis();
+
+        private Entry(SearchRidesRequest request, List<RideResponse> results) {
+            this.request = request;
+            this.filterKey = Key.filterOf(request);
+            this.results = List.copyOf(results);
+            this.rideIds = results.stream().map(RideResponse::getRideId).collect(Collectors.toSet());
+        }
+    }
+
+    private static final class Key {
+        private final Object[] parts;
+
+        private Key(Object... parts) {
+            this.parts = parts;
+        }
+
+        static Key of(SearchRidesRequest r) {
+            return new Key(filterOf(r), r.getPage(), r.getLimit(), Boolean.TRUE.equals(r.getSummary()));
+        }
+
+        /**
+         * The request's filters and ordering without paging or response shape; all pages of one
+         * search share it.
+         */
+        static Key filterOf(SearchRidesRequest r) {
+            return new Key(
+                    r.getPickupLocationId(), r.getPickupLatitude(), r.getPickupLongitude(), r.getPickupRadiusKm(),
+                    r.getDestinationLocationId(), r.getDestinationLatitude(), r.getDestinationLongitude(),
+                    r.getDestinationRadiusKm(),
+                    r.getDepartureTimeFrom(), r.getDepartureTimeTo(),
+                    r.getMinAvailableSeats(), normalize(r.getMaxPrice()),
+                    r.getSortBy() != null ? r.getSortBy().toLowerCase() : null,
+                    r.getCorridorRadiusMeters());
+        }
+
+        private static BigDecimal normalize(BigDecimal price) {
+            return price != null ? price.stripTrailingZeros() : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(parts, ((Key) o).parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(parts);
+        }
+    }
+}
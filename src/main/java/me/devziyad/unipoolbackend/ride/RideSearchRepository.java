@@ -0,0 +1,18 @@
+package me.devziyad.unipoolbackend.ride;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Search queries that derived and {@code @Query} methods can't express.
+ */
+public interface RideSearchRepository {
+
+    /**
+     * Ids of one page of rides matching {@code spec}, in the page's sort order, selected without loading
+     * any entity.
+     */
+    List<Long> findIds(Specification<Ride> spec, Pageable pageable);
+}
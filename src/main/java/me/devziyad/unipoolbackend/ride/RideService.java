@@ -11,10 +11,17 @@ public interface RideService {
     List<RideResponse> searchRides(SearchRidesRequest request);
     List<RideResponse> getRidesByDriver(Long driverId);
     List<RideResponse> getMyRidesAsDriver(Long driverId);
+    List<RideResponse> getRideSummariesByDriver(Long driverId);
     RideResponse updateRide(Long id, UpdateRideRequest request, Long driverId);
     RideResponse updateRideStatus(Long id, RideStatus status, Long driverId);
     RideResponse updateRideRoute(Long id, Long routeId, Long driverId);
+    /**
+     * Completes a ride on an admin's behalf, without the driver and status checks of
+     * {@link #updateRideStatus}; its bookings are settled the same way.
+     */
+    void forceCompleteRide(Long id);
     void cancelRide(Long id, Long driverId);
     Integer getAvailableSeats(Long id);
+    Long getRideVersion(Long id);
 }
 
@@ -21,6 +21,12 @@ import me.devziyad.unipoolbackend.util.DistanceUtil;
 import me.devziyad.unipoolbackend.vehicle.Vehicle;
 import me.devziyad.unipoolbackend.vehicle.VehicleRepository;
 import me.devziyad.unipoolbackend.route.RouteRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.request.RequestContextHolder;
@@ -30,14 +36,22 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class RideServiceImpl implements RideService {
 
+    private static final double DEFAULT_SEARCH_RADIUS_KM = 5.0;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    // Distance ranking scores in memory; searches with more matches than this are rejected
+    private static final int MAX_RANKED_CANDIDATES = 10_000;
+
     private final RideRepository rideRepository;
     private final VehicleRepository vehicleRepository;
     private final LocationRepository locationRepository;
@@ -45,6 +59,10 @@ public class RideServiceImpl implements RideService {
     private final RouteRepository routeRepository;
     private final BookingRepository bookingRepository;
     private final AuditService auditService;
+    private final RideSpatialIndex rideSpatialIndex;
+    private final RideSearchCache rideSearchCache;
+    private final RideCorridorIndex rideCorridorIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     private HttpServletRequest getCurrentRequest() {
         ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
@@ -60,6 +78,17 @@ public class RideServiceImpl implements RideService {
                     .collect(Collectors.toList());
         }
 
+        return summaryBuilder(ride)
+                .bookings(bookings)
+                .build();
+    }
+
+    // Same fields as toResponse without the passenger list; bookings stay null and are omitted from JSON
+    private RideResponse toSummaryResponse(Ride ride) {
+        return summaryBuilder(ride).build();
+    }
+
+    private RideResponse.RideResponseBuilder summaryBuilder(Ride ride) {
         return RideResponse.builder()
                 .rideId(ride.getId())
                 .driverId(ride.getDriver().getId())
@@ -91,7 +120,42 @@ public class RideServiceImpl implements RideService {
                 .status(ride.getStatus())
                 .createdAt(ride.getCreatedAt())
                 .routeId(ride.getRoute() != null ? ride.getRoute().getId() : null)
-                .bookings(bookings)
+                .version(ride.getVersion());
+    }
+
+    private RideResponse toSummaryResponse(RideSummary ride) {
+        return RideResponse.builder()
+                .rideId(ride.getRideId())
+                .driverId(ride.getDriverId())
+                .driverName(ride.getDriverName())
+                .driverRating(ride.getDriverRating())
+                .vehicleId(ride.getVehicleId())
+                .vehicleMake(ride.getVehicleMake())
+                .vehicleModel(ride.getVehicleModel())
+                .vehiclePlateNumber(ride.getVehiclePlateNumber())
+                .vehicleSeatCount(ride.getVehicleSeatCount())
+                .vehicleType(ride.getVehicleType())
+                .pickupLocationId(ride.getPickupLocationId())
+                .pickupLocationLabel(ride.getPickupLocationLabel())
+                .pickupLatitude(ride.getPickupLatitude())
+                .pickupLongitude(ride.getPickupLongitude())
+                .destinationLocationId(ride.getDestinationLocationId())
+                .destinationLocationLabel(ride.getDestinationLocationLabel())
+                .destinationLatitude(ride.getDestinationLatitude())
+                .destinationLongitude(ride.getDestinationLongitude())
+                .departureTimeStart(ride.getDepartureTimeStart())
+                .departureTimeEnd(ride.getDepartureTimeEnd())
+                .totalSeats(ride.getTotalSeats())
+                .availableSeats(ride.getAvailableSeats())
+                .estimatedDistanceKm(ride.getEstimatedDistanceKm())
+                .routeDistanceKm(ride.getRouteDistanceKm())
+                .estimatedDurationMinutes(ride.getEstimatedDurationMinutes())
+                .basePrice(ride.getBasePrice())
+                .pricePerSeat(ride.getPricePerSeat())
+                .status(ride.getStatus())
+                .createdAt(ride.getCreatedAt())
+                .routeId(ride.getRouteId())
+                .version(ride.getVersion())
                 .build();
     }
 
@@ -277,6 +341,7 @@ public class RideServiceImpl implements RideService {
                 .build();
 
         ride = rideRepository.save(ride);
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
 
         // Audit log
         java.util.Map<String, Object> metadata = new java.util.HashMap<>();
@@ -304,85 +369,152 @@ public class RideServiceImpl implements RideService {
     @Override
     @Transactional(readOnly = true)
     public List<RideResponse> searchRides(SearchRidesRequest request) {
-        // Get all available rides (time filtering will be done in memory for proper overlap detection)
-        List<Ride> rides = rideRepository.findAvailableRidesWithBookings(
-                request.getMinAvailableSeats() != null ? request.getMinAvailableSeats() : 1
-        );
+        List<RideResponse> cached = rideSearchCache.get(request);
+        if (cached != null) {
+            return cached;
+        }
+        long cacheGeneration = rideSearchCache.generation();
+        List<RideResponse> results = runSearch(request);
+        rideSearchCache.put(request, results, cacheGeneration);
+        return results;
+    }
 
-        // Filter by pickup location
-        if (request.getPickupLocationId() != null) {
-            rides = rides.stream()
-                    .filter(r -> r.getPickupLocation().getId().equals(request.getPickupLocationId()))
-                    .collect(Collectors.toList());
-        } else if (request.getPickupLatitude() != null && request.getPickupLongitude() != null) {
-            double radius = request.getPickupRadiusKm() != null ? request.getPickupRadiusKm() : 5.0;
-            rides = rides.stream()
-                    .filter(r -> DistanceUtil.isWithinRadius(
-                            request.getPickupLatitude(), request.getPickupLongitude(),
-                            r.getPickupLocation().getLatitude(), r.getPickupLocation().getLongitude(),
-                            radius))
-                    .collect(Collectors.toList());
+    private List<RideResponse> runSearch(SearchRidesRequest request) {
+        if (request.getCorridorRadiusMeters() != null) {
+            return runCorridorSearch(request);
+        }
+
+        double pickupRadius = request.getPickupRadiusKm() != null ? request.getPickupRadiusKm() : DEFAULT_SEARCH_RADIUS_KM;
+        double destinationRadius = request.getDestinationRadiusKm() != null ? request.getDestinationRadiusKm() : DEFAULT_SEARCH_RADIUS_KM;
+
+        // Narrow to rides whose endpoints fall in grid cells around the requested points;
+        // null means the index can't help and the query runs without an id restriction
+        Set<Long> candidateIds = null;
+        if (request.getPickupLocationId() == null
+                && request.getPickupLatitude() != null && request.getPickupLongitude() != null) {
+            candidateIds = rideSpatialIndex.candidates(RideSpatialIndex.Endpoint.PICKUP,
+                    request.getPickupLatitude(), request.getPickupLongitude(), pickupRadius);
+        }
+        if (request.getDestinationLocationId() == null
+                && request.getDestinationLatitude() != null && request.getDestinationLongitude() != null) {
+            Set<Long> destinationIds = rideSpatialIndex.candidates(RideSpatialIndex.Endpoint.DESTINATION,
+                    request.getDestinationLatitude(), request.getDestinationLongitude(), destinationRadius);
+            if (candidateIds == null) {
+                candidateIds = destinationIds;
+            } else if (destinationIds != null) {
+                candidateIds.retainAll(destinationIds);
+            }
         }
-
-        // Filter by destination location
-        if (request.getDestinationLocationId() != null) {
-            rides = rides.stream()
-                    .filter(r -> r.getDestinationLocation().getId().equals(request.getDestinationLocationId()))
-                    .collect(Collectors.toList());
-        } else if (request.getDestinationLatitude() != null && request.getDestinationLongitude() != null) {
-            double radius = request.getDestinationRadiusKm() != null ? request.getDestinationRadiusKm() : 5.0;
-            rides = rides.stream()
-                    .filter(r -> DistanceUtil.isWithinRadius(
-                            request.getDestinationLatitude(), request.getDestinationLongitude(),
-                            r.getDestinationLocation().getLatitude(), r.getDestinationLocation().getLongitude(),
-                            radius))
-                    .collect(Collectors.toList());
+        if (candidateIds != null && candidateIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        return findRides(request, candidateIds);
+    }
 
-        // Filter by time window with proper overlap detection
-        // Two time ranges overlap if: searchStart < rideEnd AND searchEnd > rideStart
-        Instant searchStart = request.getDepartureTimeFrom() != null ? request.getDepartureTimeFrom() : Instant.now();
-        if (request.getDepartureTimeTo() != null) {
-            Instant searchEnd = request.getDepartureTimeTo();
-            rides = rides.stream()
-                    .filter(r -> {
-                        // Check if ride time range overlaps with search time range
-                        // Overlap condition: searchStart < rideEnd AND searchEnd > rideStart
-                        return searchStart.isBefore(r.getDepartureTimeEnd()) && 
-                               searchEnd.isAfter(r.getDepartureTimeStart());
-                    })
-                    .collect(Collectors.toList());
+    private List<RideResponse> runCorridorSearch(SearchRidesRequest request) {
+        if (request.getPickupLatitude() == null || request.getPickupLongitude() == null
+                || request.getDestinationLatitude() == null || request.getDestinationLongitude() == null) {
+            throw new BusinessException("Corridor search requires pickup and destination coordinates");
+        }
+
+        Set<Long> candidateIds = rideCorridorIndex.match(
+                request.getPickupLatitude(), request.getPickupLongitude(),
+                request.getDestinationLatitude(), request.getDestinationLongitude(),
+                request.getCorridorRadiusMeters() / 1000.0);
+        if (candidateIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Endpoints were matched against the route, so the query only applies the remaining filters
+        SearchRidesRequest filters = new SearchRidesRequest();
+        filters.setDepartureTimeFrom(request.getDepartureTimeFrom());
+        filters.setDepartureTimeTo(request.getDepartureTimeTo());
+        filters.setMinAvailableSeats(request.getMinAvailableSeats());
+        filters.setMaxPrice(request.getMaxPrice());
+        filters.setSortBy(request.getSortBy());
+        filters.setPage(request.getPage());
+        filters.setLimit(request.getLimit());
+        filters.setSummary(request.getSummary());
+        return findRides(filters, candidateIds);
+    }
+
+    private List<RideResponse> findRides(SearchRidesRequest request, Set<Long> candidateIds) {
+        double pickupRadius = request.getPickupRadiusKm() != null ? request.getPickupRadiusKm() : DEFAULT_SEARCH_RADIUS_KM;
+        double destinationRadius = request.getDestinationRadiusKm() != null ? request.getDestinationRadiusKm() : DEFAULT_SEARCH_RADIUS_KM;
+        int page = request.getPage() != null ? request.getPage() : 0;
+        int limit = request.getLimit() != null ? request.getLimit() : DEFAULT_SEARCH_LIMIT;
+        Instant now = Instant.now();
+        Specification<Ride> spec = RideSpecifications.search(request, candidateIds,
+                pickupRadius, destinationRadius, now);
+
+        List<Ride> rides;
+        if ("distance".equalsIgnoreCase(request.getSortBy())) {
+            // Relevance can't be ordered in SQL; keep only the best (page + 1) * limit matches.
+            // Every match must be ranked, so a search with more candidates than the cap is rejected
+            // instead of ranking an arbitrary subset
+            long offset = (long) page * limit;
+            List<Ride> candidates = rideRepository.findBy(spec, query -> query
+                    .limit(MAX_RANKED_CANDIDATES + 1)
+                    .all());
+            if (candidates.size() > MAX_RANKED_CANDIDATES) {
+                throw new BusinessException("Too many rides match to sort by distance; narrow the search radius "
+                        + "or departure time range");
+            }
+            int k = (int) Math.min(offset + limit, candidates.size());
+            RideRelevance relevance = new RideRelevance(request, pickupRadius, destinationRadius, now);
+            List<Ride> ranked = relevance.top(candidates, k);
+            rides = ranked.subList((int) Math.min(offset, ranked.size()), ranked.size());
         } else {
-            // If no end time specified, just check if ride starts after search start
-            rides = rides.stream()
-                    .filter(r -> r.getDepartureTimeStart().isAfter(searchStart) || r.getDepartureTimeStart().equals(searchStart))
-                    .collect(Collectors.toList());
+            // All filters, ordering and paging run in the database; slice() skips the count query
+            Pageable pageable = PageRequest.of(page, limit, searchSort(request.getSortBy()));
+            if (Boolean.TRUE.equals(request.getSummary())) {
+                // Page of ids, then scalar columns only; no ride entity is loaded
+                return findSummariesInOrder(rideRepository.findIds(spec, pageable));
+            }
+            Slice<Ride> slice = rideRepository.findBy(spec, query -> query.slice(pageable));
+            rides = slice.getContent();
         }
 
-        // Filter by price
-        if (request.getMaxPrice() != null) {
-            rides = rides.stream()
-                    .filter(r -> r.getPricePerSeat().compareTo(request.getMaxPrice()) <= 0)
-                    .collect(Collectors.toList());
+        if (Boolean.TRUE.equals(request.getSummary())) {
+            // Ranking already loaded these rides with their to-one associations
+            return rides.stream().map(this::toSummaryResponse).collect(Collectors.toList());
+        }
+
+        if (!rides.isEmpty()) {
+            // Fetch bookings for the whole page in one query instead of one lazy load per ride
+            rideRepository.findWithBookingsByIdIn(rides.stream().map(Ride::getId).collect(Collectors.toList()));
         }
 
-        // Sort
-        if (request.getSortBy() != null) {
-            switch (request.getSortBy().toLowerCase()) {
+        return rides.stream().map(this::toResponse).collect(Collectors.toList());
+    }
+
+    private List<RideResponse> findSummariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, RideSummary> summaries = rideRepository.findSummariesByIdIn(ids).stream()
+                .collect(Collectors.toMap(RideSummary::getRideId, Function.identity()));
+        // A ride deleted between the two queries is left out
+        return ids.stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .map(this::toSummaryResponse)
+                .collect(Collectors.toList());
+    }
+
+    private Sort searchSort(String sortBy) {
+        if (sortBy != null) {
+            switch (sortBy.toLowerCase()) {
                 case "price":
-                    rides.sort(Comparator.comparing(Ride::getPricePerSeat));
-                    break;
+                    return Sort.by("pricePerSeat", "id");
                 case "departuretime":
-                    rides.sort(Comparator.comparing(Ride::getDepartureTimeStart));
-                    break;
-                case "distance":
+                    return Sort.by("departureTimeStart", "id");
                 default:
-                    // Already sorted by relevance
                     break;
             }
         }
-
-        return rides.stream().map(this::toResponse).collect(Collectors.toList());
+        // Stable order so consecutive pages don't overlap
+        return Sort.by("id");
     }
 
     @Override
@@ -399,6 +531,14 @@ public class RideServiceImpl implements RideService {
         return getRidesByDriver(driverId);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<RideResponse> getRideSummariesByDriver(Long driverId) {
+        return rideRepository.findSummariesByDriverId(driverId).stream()
+                .map(this::toSummaryResponse)
+                .collect(Collectors.toList());
+    }
+
     @Override
     @Transactional
     public RideResponse updateRide(Long id, UpdateRideRequest request, Long driverId) {
@@ -459,10 +599,9 @@ public class RideServiceImpl implements RideService {
             if (request.getTotalSeats() < ride.getTotalSeats() - ride.getAvailableSeats()) {
                 throw new BusinessException("Cannot reduce seats below booked seats");
             }
-            int bookedSeats = ride.getTotalSeats() - ride.getAvailableSeats();
-            ride.setTotalSeats(request.getTotalSeats());
-            ride.setAvailableSeats(request.getTotalSeats() - bookedSeats);
+            // Applied with resizeSeats after the other fields are saved, so concurrent bookings aren't overwritten
         }
+        int totalSeats = request.getTotalSeats() != null ? request.getTotalSeats() : ride.getTotalSeats();
 
         if (request.getBasePrice() != null) {
             if (request.getBasePrice().compareTo(BigDecimal.ZERO) <= 0) {
@@ -474,7 +613,7 @@ public class RideServiceImpl implements RideService {
             ride.setBasePrice(request.getBasePrice());
             if (request.getPricePerSeat() == null) {
                 ride.setPricePerSeat(ride.getBasePrice().divide(
-                        BigDecimal.valueOf(ride.getTotalSeats()), 2, RoundingMode.HALF_UP));
+                        BigDecimal.valueOf(totalSeats), 2, RoundingMode.HALF_UP));
             }
         }
 
@@ -491,7 +630,16 @@ public class RideServiceImpl implements RideService {
         // Note: Route is now managed separately, so we don't recalculate it here
         // If locations change, the driver should update the route separately
 
-        return toResponse(rideRepository.save(ride));
+        ride = rideRepository.save(ride);
+        if (request.getTotalSeats() != null && !request.getTotalSeats().equals(ride.getTotalSeats())) {
+            if (rideRepository.resizeSeats(ride.getId(), request.getTotalSeats()) == 0) {
+                throw new BusinessException("Cannot reduce seats below booked seats");
+            }
+            ride = rideRepository.findById(ride.getId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        }
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
+        return toResponse(ride);
     }
 
     @Override
@@ -533,7 +681,9 @@ public class RideServiceImpl implements RideService {
         ride.setRouteDistanceKm(route.getDistanceKm());
         ride.setEstimatedDurationMinutes(route.getEstimatedDurationMinutes());
 
-        return toResponse(rideRepository.save(ride));
+        ride = rideRepository.save(ride);
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
+        return toResponse(ride);
     }
 
     @Override
@@ -551,19 +701,12 @@ public class RideServiceImpl implements RideService {
             throw new BusinessException("Cannot change status of completed or cancelled ride");
         }
 
-        ride.setStatus(status);
-        ride = rideRepository.save(ride);
-
-        // If ride is being completed, mark all CONFIRMED bookings as COMPLETED
         if (status == RideStatus.COMPLETED) {
-            List<Booking> confirmedBookings = bookingRepository.findByRideId(ride.getId()).stream()
-                    .filter(booking -> booking.getStatus() == BookingStatus.CONFIRMED)
-                    .collect(Collectors.toList());
-            
-            for (Booking booking : confirmedBookings) {
-                booking.setStatus(BookingStatus.COMPLETED);
-            }
-            bookingRepository.saveAll(confirmedBookings);
+            ride = complete(ride);
+        } else {
+            ride.setStatus(status);
+            ride = rideRepository.save(ride);
+            eventPublisher.publishEvent(RideChangedEvent.of(ride));
         }
 
         // Audit log
@@ -575,6 +718,43 @@ public class RideServiceImpl implements RideService {
         return toResponse(ride);
     }
 
+    @Override
+    @Transactional
+    public void forceCompleteRide(Long id) {
+        Ride ride = rideRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        complete(ride);
+    }
+
+    /**
+     * Completes the ride: CONFIRMED bookings become COMPLETED, and whoever is still on the waitlist or
+     * holding unconfirmed seats is dropped. Held seats go back to the ride.
+     */
+    private Ride complete(Ride ride) {
+        List<Booking> bookings = bookingRepository.findByRideId(ride.getId());
+        int releasedSeats = 0;
+        for (Booking booking : bookings) {
+            if (booking.getStatus() == BookingStatus.CONFIRMED) {
+                booking.setStatus(BookingStatus.COMPLETED);
+            } else if (booking.getStatus() == BookingStatus.WAITLISTED
+                    || booking.getStatus() == BookingStatus.HELD) {
+                if (booking.getStatus() == BookingStatus.HELD) {
+                    releasedSeats += booking.getSeatsBooked();
+                }
+                booking.setStatus(BookingStatus.CANCELLED);
+                booking.setCancelledAt(Instant.now());
+                booking.setHoldExpiresAt(null);
+            }
+        }
+        bookingRepository.saveAll(bookings);
+
+        ride.setStatus(RideStatus.COMPLETED);
+        ride.setAvailableSeats(Math.min(ride.getTotalSeats(), ride.getAvailableSeats() + releasedSeats));
+        ride = rideRepository.save(ride);
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
+        return ride;
+    }
+
     @Override
     @Transactional
     public void cancelRide(Long id, Long driverId) {
@@ -590,7 +770,8 @@ public class RideServiceImpl implements RideService {
         }
 
         ride.setStatus(RideStatus.CANCELLED);
-        rideRepository.save(ride);
+        ride = rideRepository.save(ride);
+        eventPublisher.publishEvent(RideChangedEvent.of(ride));
 
         // Audit log
         java.util.Map<String, Object> metadata = new java.util.HashMap<>();
@@ -604,5 +785,11 @@ public class RideServiceImpl implements RideService {
                 .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
         return ride.getAvailableSeats();
     }
+
+    @Override
+    public Long getRideVersion(Long id) {
+        return rideRepository.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+    }
 }
 
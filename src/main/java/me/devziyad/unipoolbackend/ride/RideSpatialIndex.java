@@ -0,0 +1,157 @@
+package me.devziyad.unipoolbackend.ride;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.util.DistanceUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grid-cell index of POSTED rides keyed on pickup and destination coordinates.
+ * Search asks for the cells covering a point and radius and only loads the rides found there;
+ * the exact radius check is still applied to those candidates.
+ */
+@Component
+@Slf4j
+public class RideSpatialIndex {
+
+    // Above this many cells a lookup costs more than scanning, so the caller falls back to a full query
+    private static final int MAX_CELLS_PER_LOOKUP = 4096;
+
+    private final RideRepository rideRepository;
+    private final double cellSizeDegrees;
+
+    private final Map<Long, Set<Long>> pickupCells = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> destinationCells = new ConcurrentHashMap<>();
+    // rideId -> {pickupCell, destinationCell}, so moves and removals don't need the old coordinates
+    private final Map<Long, long[]> rideCells = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    public RideSpatialIndex(RideRepository rideRepository,
+                            @Value("${ride.search.index.cell-size-degrees:0.02}") double cellSizeDegrees) {
+        this.rideRepository = rideRepository;
+        this.cellSizeDegrees = cellSizeDegrees;
+    }
+
+    public enum Endpoint {
+        PICKUP,
+        DESTINATION
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (this) {
+            pickupCells.clear();
+            destinationCells.clear();
+            rideCells.clear();
+            for (RideCoordinates ride : rideRepository.findCoordinatesByStatus(RideStatus.POSTED)) {
+                put(ride.getId(), ride.getPickupLatitude(), ride.getPickupLongitude(),
+                        ride.getDestinationLatitude(), ride.getDestinationLongitude());
+            }
+            ready = true;
+        }
+        log.info("Ride spatial index built with {} posted rides", rideCells.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRideChanged(RideChangedEvent event) {
+        if (event.getStatus() == RideStatus.POSTED) {
+            put(event.getRideId(), event.getPickupLatitude(), event.getPickupLongitude(),
+                    event.getDestinationLatitude(), event.getDestinationLongitude());
+        } else {
+            remove(event.getRideId());
+        }
+    }
+
+    public synchronized void put(Long rideId, double pickupLat, double pickupLon, double destLat, double destLon) {
+        remove(rideId);
+        long pickupCell = cellOf(pickupLat, pickupLon);
+        long destinationCell = cellOf(destLat, destLon);
+        pickupCells.computeIfAbsent(pickupCell, k -> ConcurrentHashMap.newKeySet()).add(rideId);
+        destinationCells.computeIfAbsent(destinationCell, k -> ConcurrentHashMap.newKeySet()).add(rideId);
+        rideCells.put(rideId, new long[]{pickupCell, destinationCell});
+    }
+
+    public synchronized void remove(Long rideId) {
+        long[] cells = rideCells.remove(rideId);
+        if (cells == null) {
+            return;
+        }
+        removeFromCell(pickupCells, cells[0], rideId);
+        removeFromCell(destinationCells, cells[1], rideId);
+    }
+
+    /**
+     * Ride ids whose endpoint lies in a cell overlapping the circle around (lat, lon).
+     *
+     * @return candidate ids (a superset of the exact matches), or null when the index is not usable
+     *         for this lookup and the caller should query without it
+     */
+    public Set<Long> candidates(Endpoint endpoint, double lat, double lon, double radiusKm) {
+        if (!ready) {
+            return null;
+        }
+
+        // Same earth radius as the exact test, so the cells never drop a ride the query would keep
+        double latSpan = Math.toDegrees(radiusKm / DistanceUtil.EARTH_RADIUS_KM);
+        double cosLat = Math.cos(Math.toRadians(Math.min(Math.abs(lat) + latSpan, 89.0)));
+        double lonSpan = latSpan / cosLat;
+
+        int minLatIdx = index(lat - latSpan);
+        int maxLatIdx = index(lat + latSpan);
+        int minLonIdx = index(lon - lonSpan);
+        int maxLonIdx = index(lon + lonSpan);
+
+        long cellCount = (long) (maxLatIdx - minLatIdx + 1) * (maxLonIdx - minLonIdx + 1);
+        if (cellCount > MAX_CELLS_PER_LOOKUP) {
+            return null;
+        }
+
+        Map<Long, Set<Long>> cells = endpoint == Endpoint.PICKUP ? pickupCells : destinationCells;
+        Set<Long> result = new HashSet<>();
+        for (int latIdx = minLatIdx; latIdx <= maxLatIdx; latIdx++) {
+            for (int lonIdx = minLonIdx; lonIdx <= maxLonIdx; lonIdx++) {
+                Set<Long> rides = cells.get(key(latIdx, lonIdx));
+                if (rides != null) {
+                    result.addAll(rides);
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return rideCells.size();
+    }
+
+    private void removeFromCell(Map<Long, Set<Long>> cells, long cell, Long rideId) {
+        Set<Long> rides = cells.get(cell);
+        if (rides != null) {
+            rides.remove(rideId);
+            if (rides.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    private long cellOf(double lat, double lon) {
+        return key(index(lat), index(lon));
+    }
+
+    private int index(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long key(int latIdx, int lonIdx) {
+        return ((long) latIdx << 32) | (lonIdx & 0xffffffffL);
+    }
+}
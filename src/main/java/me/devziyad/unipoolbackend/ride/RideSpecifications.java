@@ -0,0 +1,128 @@
+package me.devziyad.unipoolbackend.ride;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.location.Location;
+import me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest;
+import me.devziyad.unipoolbackend.util.DistanceUtil;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Criteria for ride search, so every filter runs in a single database query.
+ */
+public final class RideSpecifications {
+
+    private RideSpecifications() {
+    }
+
+    /**
+     * Available rides matching the search filters.
+     *
+     * @param candidateIds ride ids pre-selected by the spatial index, or null for no id restriction
+     */
+    public static Specification<Ride> search(SearchRidesRequest request, Collection<Long> candidateIds,
+                                             double pickupRadiusKm, double destinationRadiusKm, Instant now) {
+        return (root, query, cb) -> {
+            Join<Ride, Location> pickup;
+            Join<Ride, Location> destination;
+            if (!selectsRides(query)) {
+                pickup = root.join("pickupLocation");
+                destination = root.join("destinationLocation");
+            } else {
+                // Fetch the to-one associations in the same statement instead of one select per ride
+                pickup = (Join<Ride, Location>) root.<Ride, Location>fetch("pickupLocation");
+                destination = (Join<Ride, Location>) root.<Ride, Location>fetch("destinationLocation");
+                root.fetch("driver");
+                root.fetch("vehicle");
+                root.fetch("route", JoinType.LEFT);
+            }
+            List<Predicate> predicates = new ArrayList<>();
+
+            predicates.add(cb.equal(root.get("status"), RideStatus.POSTED));
+            predicates.add(cb.greaterThanOrEqualTo(root.<Integer>get("availableSeats"),
+                    request.getMinAvailableSeats() != null ? request.getMinAvailableSeats() : 1));
+
+            if (candidateIds != null) {
+                predicates.add(root.get("id").in(candidateIds));
+            }
+
+            if (request.getPickupLocationId() != null) {
+                predicates.add(cb.equal(pickup.get("id"), request.getPickupLocationId()));
+            } else if (request.getPickupLatitude() != null && request.getPickupLongitude() != null) {
+                addRadius(cb, predicates, pickup.get("latitude"), pickup.get("longitude"),
+                        request.getPickupLatitude(), request.getPickupLongitude(), pickupRadiusKm);
+            }
+
+            if (request.getDestinationLocationId() != null) {
+                predicates.add(cb.equal(destination.get("id"), request.getDestinationLocationId()));
+            } else if (request.getDestinationLatitude() != null && request.getDestinationLongitude() != null) {
+                addRadius(cb, predicates, destination.get("latitude"), destination.get("longitude"),
+                        request.getDestinationLatitude(), request.getDestinationLongitude(), destinationRadiusKm);
+            }
+
+            // Two time ranges overlap if: searchStart < rideEnd AND searchEnd > rideStart
+            Instant searchStart = request.getDepartureTimeFrom() != null ? request.getDepartureTimeFrom() : now;
+            if (request.getDepartureTimeTo() != null) {
+                predicates.add(cb.greaterThan(root.<Instant>get("departureTimeEnd"), searchStart));
+                predicates.add(cb.lessThan(root.<Instant>get("departureTimeStart"), request.getDepartureTimeTo()));
+            } else {
+                // If no end time specified, just check if ride starts at or after search start
+                predicates.add(cb.greaterThanOrEqualTo(root.<Instant>get("departureTimeStart"), searchStart));
+            }
+
+            if (request.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("pricePerSeat"), request.getMaxPrice()));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Count and id queries select no entity, so there is nothing to fetch into
+    private static boolean selectsRides(CriteriaQuery<?> query) {
+        return query.getResultType() == Ride.class;
+    }
+
+    /**
+     * Bounding box (index friendly) plus the exact great-circle test, so every row the query returns is
+     * within the radius and pages come back full.
+     * <p>
+     * Uses the spherical law of cosines, {@code sin φ1 sin φ2 + cos φ1 cos φ2 cos Δλ >= cos(r / R)}, which
+     * needs only SIN, COS and RADIANS in SQL; the center's terms are computed here once.
+     */
+    private static void addRadius(CriteriaBuilder cb, List<Predicate> predicates,
+                                  Path<Double> latitude, Path<Double> longitude,
+                                  double centerLat, double centerLon, double radiusKm) {
+        // Same earth radius as the exact test, so the box never cuts into the circle
+        double latSpan = Math.toDegrees(radiusKm / DistanceUtil.EARTH_RADIUS_KM);
+        predicates.add(cb.between(latitude, centerLat - latSpan, centerLat + latSpan));
+        // The circle is widest in longitude at its pole-side edge; near a pole or across the antimeridian
+        // the longitude range wraps, and only the latitude bound applies
+        if (Math.abs(centerLat) + latSpan < 90.0) {
+            double lonSpan = latSpan / Math.cos(Math.toRadians(Math.abs(centerLat) + latSpan));
+            if (centerLon - lonSpan >= -180.0 && centerLon + lonSpan <= 180.0) {
+                predicates.add(cb.between(longitude, centerLon - lonSpan, centerLon + lonSpan));
+            }
+        }
+
+        double centerLatRad = Math.toRadians(centerLat);
+        Expression<Double> latRad = cb.function("radians", Double.class, latitude);
+        Expression<Double> dLonRad = cb.diff(cb.function("radians", Double.class, longitude), Math.toRadians(centerLon));
+        Expression<Double> cosCentralAngle = cb.sum(
+                cb.prod(cb.function("sin", Double.class, latRad), Math.sin(centerLatRad)),
+                cb.prod(cb.prod(cb.function("cos", Double.class, latRad), Math.cos(centerLatRad)),
+                        cb.function("cos", Double.class, dLonRad)));
+        predicates.add(cb.ge(cosCentralAngle, Math.cos(radiusKm / DistanceUtil.EARTH_RADIUS_KM)));
+    }
+}
@@ -0,0 +1,45 @@
+package me.devziyad.unipoolbackend.ride;
+
+import me.devziyad.unipoolbackend.common.RideStatus;
+import me.devziyad.unipoolbackend.common.VehicleType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Scalar projection of a ride with its driver, vehicle and locations, for list endpoints
+ * that don't need the passenger list.
+ */
+public interface RideSummary {
+    Long getRideId();
+    Long getDriverId();
+    String getDriverName();
+    BigDecimal getDriverRating();
+    Long getVehicleId();
+    String getVehicleMake();
+    String getVehicleModel();
+    String getVehiclePlateNumber();
+    Integer getVehicleSeatCount();
+    VehicleType getVehicleType();
+    Long getPickupLocationId();
+    String getPickupLocationLabel();
+    Double getPickupLatitude();
+    Double getPickupLongitude();
+    Long getDestinationLocationId();
+    String getDestinationLocationLabel();
+    Double getDestinationLatitude();
+    Double getDestinationLongitude();
+    Instant getDepartureTimeStart();
+    Instant getDepartureTimeEnd();
+    Integer getTotalSeats();
+    Integer getAvailableSeats();
+    Double getEstimatedDistanceKm();
+    Double getRouteDistanceKm();
+    Integer getEstimatedDurationMinutes();
+    BigDecimal getBasePrice();
+    BigDecimal getPricePerSeat();
+    RideStatus getStatus();
+    Instant getCreatedAt();
+    Long getRouteId();
+    Long getVersion();
+}
@@ -1,5 +1,6 @@
 package me.devziyad.unipoolbackend.ride.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -47,6 +48,9 @@ public class RideResponse {
     private RideStatus status;
     private Instant createdAt;
     private Long routeId;
-    private List<BookingResponse> bookings;
+    // Also sent as the ETag of GET /api/rides/{id}
+    private Long version;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<BookingResponse> bookings; // null in summary responses
 }
 
@@ -0,0 +1,20 @@
+package me.devziyad.unipoolbackend.ride.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchCacheStatsResponse {
+    private Long hits;
+    private Long misses;
+    private Double hitRate;
+    private Long evictions;
+    private Long invalidations;
+    private Integer size;
+    private Integer maxEntries;
+}
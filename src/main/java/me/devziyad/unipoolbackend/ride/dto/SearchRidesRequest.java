@@ -1,5 +1,7 @@
 package me.devziyad.unipoolbackend.ride.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -16,6 +18,11 @@ public class SearchRidesRequest {
     private Double destinationLatitude;
     private Double destinationLongitude;
     private Double destinationRadiusKm;
+
+    // When set, match rides whose route passes within this distance of the pickup and then the destination
+    @Min(value = 50, message = "Corridor radius must be at least 50 meters")
+    @Max(value = 5000, message = "Corridor radius cannot exceed 5000 meters")
+    private Integer corridorRadiusMeters;
     
     private Instant departureTimeFrom;
     private Instant departureTimeTo;
@@ -24,5 +31,14 @@ public class SearchRidesRequest {
     private BigDecimal maxPrice;
     
     private String sortBy; // distance, price, departureTime
-}
 
+    @Min(value = 0, message = "Page must be 0 or greater")
+    @Max(value = 100, message = "Page cannot exceed 100")
+    private Integer page; // 0-based, defaults to 0
+
+    @Min(value = 1, message = "Limit must be at least 1")
+    @Max(value = 100, message = "Limit cannot exceed 100")
+    private Integer limit; // page size, defaults to 20
+
+    private Boolean summary; // true to omit bookings from results
+}
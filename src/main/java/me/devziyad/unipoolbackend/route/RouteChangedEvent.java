@@ -0,0 +1,14 @@
+package me.devziyad.unipoolbackend.route;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when a route's geometry is recalculated, so cached decodings of it are dropped.
+ */
+@Getter
+@AllArgsConstructor
+public class RouteChangedEvent {
+
+    private final Long routeId;
+}
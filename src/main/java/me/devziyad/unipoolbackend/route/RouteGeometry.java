@@ -0,0 +1,208 @@
+package me.devziyad.unipoolbackend.route;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import me.devziyad.unipoolbackend.util.DistanceUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Decoded, simplified route polyline held as primitive arrays, with the cumulative distance
+ * at every vertex so positions along the route can be compared and measured without re-parsing GeoJSON.
+ */
+public final class RouteGeometry {
+
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cumulativeKm;
+
+    private RouteGeometry(double[] latitudes, double[] longitudes) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cumulativeKm = new double[latitudes.length];
+        for (int i = 1; i < latitudes.length; i++) {
+            cumulativeKm[i] = cumulativeKm[i - 1] + DistanceUtil.haversineDistance(
+                    latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        }
+    }
+
+    /**
+     * Parses a GeoJSON LineString as stored in {@link Route#getPolyline()} and simplifies it
+     * with Douglas-Peucker.
+     *
+     * @return the geometry, or null if the string is not a LineString with at least two points
+     */
+    public static RouteGeometry fromGeoJson(String geoJson, double toleranceMeters) {
+        if (geoJson == null || geoJson.isBlank()) {
+            return null;
+        }
+        JsonNode coordinates;
+        try {
+            coordinates = OBJECT_MAPPER.readTree(geoJson).path("coordinates");
+        } catch (Exception e) {
+            return null;
+        }
+        if (!coordinates.isArray() || coordinates.size() < 2) {
+            return null;
+        }
+
+        // GeoJSON positions are [longitude, latitude]
+        double[] lats = new double[coordinates.size()];
+        double[] lons = new double[coordinates.size()];
+        for (int i = 0; i < coordinates.size(); i++) {
+            JsonNode position = coordinates.get(i);
+            lons[i] = position.path(0).asDouble();
+            lats[i] = position.path(1).asDouble();
+        }
+        return simplify(lats, lons, toleranceMeters / 1000.0);
+    }
+
+    public static RouteGeometry straightLine(double startLat, double startLon, double endLat, double endLon) {
+        return new RouteGeometry(new double[]{startLat, endLat}, new double[]{startLon, endLon});
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    public int segmentCount() {
+        return latitudes.length - 1;
+    }
+
+    public double latitude(int index) {
+        return latitudes[index];
+    }
+
+    public double longitude(int index) {
+        return longitudes[index];
+    }
+
+    public double lengthKm() {
+        return cumulativeKm[cumulativeKm.length - 1];
+    }
+
+    /**
+     * Closest point on the route to (lat, lon).
+     */
+    public Projection project(double lat, double lon) {
+        return project(lat, lon, 0, segmentCount() - 1);
+    }
+
+    /**
+     * Closest point to (lat, lon) on segments {@code fromSegment..toSegment} inclusive.
+     */
+    public Projection project(double lat, double lon, int fromSegment, int toSegment) {
+        double kmPerDegreeLon = KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(lat));
+        int first = Math.max(0, fromSegment);
+        int last = Math.min(segmentCount() - 1, toSegment);
+
+        int bestSegment = first;
+        double bestDistanceSq = Double.MAX_VALUE;
+        double bestFraction = 0;
+        for (int i = first; i <= last; i++) {
+            // Local planar frame centered on the query point; accurate at corridor scale
+            double ax = (longitudes[i] - lon) * kmPerDegreeLon;
+            double ay = (latitudes[i] - lat) * KM_PER_DEGREE_LAT;
+            double bx = (longitudes[i + 1] - lon) * kmPerDegreeLon;
+            double by = (latitudes[i + 1] - lat) * KM_PER_DEGREE_LAT;
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSq = dx * dx + dy * dy;
+            double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSq));
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            double distanceSq = px * px + py * py;
+            if (distanceSq < bestDistanceSq) {
+                bestDistanceSq = distanceSq;
+                bestSegment = i;
+                bestFraction = t;
+            }
+        }
+
+        double segmentKm = cumulativeKm[bestSegment + 1] - cumulativeKm[bestSegment];
+        return new Projection(bestSegment, Math.sqrt(bestDistanceSq),
+                cumulativeKm[bestSegment] + bestFraction * segmentKm);
+    }
+
+    private static RouteGeometry simplify(double[] lats, double[] lons, double toleranceKm) {
+        int n = lats.length;
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+
+        double kmPerDegreeLon = KM_PER_DEGREE_LAT * Math.cos(Math.toRadians(lats[0]));
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, n - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int start = range[0];
+            int end = range[1];
+            if (end - start < 2) {
+                continue;
+            }
+
+            double ax = lons[start] * kmPerDegreeLon;
+            double ay = lats[start] * KM_PER_DEGREE_LAT;
+            double dx = lons[end] * kmPerDegreeLon - ax;
+            double dy = lats[end] * KM_PER_DEGREE_LAT - ay;
+            double lengthSq = dx * dx + dy * dy;
+
+            int farthest = -1;
+            double farthestDistance = toleranceKm;
+            for (int i = start + 1; i < end; i++) {
+                double px = lons[i] * kmPerDegreeLon - ax;
+                double py = lats[i] * KM_PER_DEGREE_LAT - ay;
+                double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSq));
+                double ex = px - t * dx;
+                double ey = py - t * dy;
+                double distance = Math.sqrt(ex * ex + ey * ey);
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                ranges.push(new int[]{start, farthest});
+                ranges.push(new int[]{farthest, end});
+            }
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) {
+                kept++;
+            }
+        }
+        double[] simplifiedLats = new double[kept];
+        double[] simplifiedLons = new double[kept];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (keep[i]) {
+                simplifiedLats[j] = lats[i];
+                simplifiedLons[j] = lons[i];
+                j++;
+            }
+        }
+        return new RouteGeometry(simplifiedLats, simplifiedLons);
+    }
+
+    /**
+     * Nearest point on the route: the segment it lies on, its distance from the query point
+     * and its distance from the start of the route.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Projection {
+        private final int segment;
+        private final double distanceKm;
+        private final double alongKm;
+    }
+}
@@ -0,0 +1,110 @@
+package me.devziyad.unipoolbackend.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded and simplified route geometries by route id, so GeoJSON is parsed once per route
+ * rather than on every search or location update. Bounded LRU; an evicted geometry is simply
+ * decoded again on its next use.
+ */
+@Component
+@Slf4j
+public class RouteGeometryCache {
+
+    private final RouteRepository routeRepository;
+    private final double toleranceMeters;
+    private final int maxEntries;
+
+    private final LinkedHashMap<Long, RouteGeometry> geometries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public RouteGeometryCache(RouteRepository routeRepository,
+                              @Value("${route.geometry.simplify-tolerance-meters:15}") double toleranceMeters,
+                              @Value("${route.geometry.cache.max-entries:5000}") int maxEntries) {
+        this.routeRepository = routeRepository;
+        this.toleranceMeters = toleranceMeters;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the route's geometry, or null if the route doesn't exist
+     */
+    public RouteGeometry get(Long routeId) {
+        RouteGeometry geometry;
+        synchronized (this) {
+            geometry = geometries.get(routeId);
+        }
+        if (geometry != null) {
+            return geometry;
+        }
+        return routeRepository.findById(routeId)
+                .map(this::put)
+                .orElse(null);
+    }
+
+    /**
+     * Geometries for several routes, loading all missing ones in a single query.
+     */
+    public Map<Long, RouteGeometry> getAll(Collection<Long> routeIds) {
+        Map<Long, RouteGeometry> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (this) {
+            for (Long routeId : routeIds) {
+                RouteGeometry geometry = geometries.get(routeId);
+                if (geometry != null) {
+                    result.put(routeId, geometry);
+                } else {
+                    missing.add(routeId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Route route : routeRepository.findAllById(missing)) {
+                result.put(route.getId(), put(route));
+            }
+        }
+        return result;
+    }
+
+    public synchronized void evict(Long routeId) {
+        geometries.remove(routeId);
+    }
+
+    // Runs before other listeners so they reload the new geometry
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRouteChanged(RouteChangedEvent event) {
+        evict(event.getRouteId());
+    }
+
+    private RouteGeometry put(Route route) {
+        RouteGeometry geometry = RouteGeometry.fromGeoJson(route.getPolyline(), toleranceMeters);
+        if (geometry == null) {
+            // Routes created while OSRM was unreachable have no polyline
+            log.debug("Route {} has no usable polyline, using a straight line", route.getId());
+            geometry = RouteGeometry.straightLine(route.getStartLatitude(), route.getStartLongitude(),
+                    route.getEndLatitude(), route.getEndLongitude());
+        }
+        synchronized (this) {
+            geometries.put(route.getId(), geometry);
+            Iterator<RouteGeometry> eldest = geometries.values().iterator();
+            while (geometries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return geometry;
+    }
+}
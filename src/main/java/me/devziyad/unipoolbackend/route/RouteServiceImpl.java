@@ -9,6 +9,7 @@ import me.devziyad.unipoolbackend.route.dto.UpdateRouteRequest;
 import me.devziyad.unipoolbackend.user.User;
 import me.devziyad.unipoolbackend.user.UserRepository;
 import me.devziyad.unipoolbackend.util.RoutingService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +23,7 @@ public class RouteServiceImpl implements RouteService {
     private final RouteRepository routeRepository;
     private final UserRepository userRepository;
     private final RoutingService routingService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private RouteResponse toResponse(Route route) {
         return RouteResponse.builder()
@@ -156,6 +158,9 @@ public class RouteServiceImpl implements RouteService {
 
         route.setUpdatedAt(java.time.Instant.now());
         route = routeRepository.save(route);
+        if (needsRecalculation) {
+            eventPublisher.publishEvent(new RouteChangedEvent(route.getId()));
+        }
 
         return toResponse(route);
     }
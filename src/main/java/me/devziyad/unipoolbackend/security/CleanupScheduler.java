@@ -2,6 +2,7 @@ package me.devziyad.unipoolbackend.security;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.idempotency.IdempotencyStore;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,6 +16,7 @@ public class CleanupScheduler {
 
     private final TokenBlacklistRepository tokenBlacklistRepository;
     private final FailedLoginAttemptRepository failedLoginAttemptRepository;
+    private final IdempotencyStore idempotencyStore;
 
     @Scheduled(cron = "0 0 * * * *") // Run every hour
     @Transactional
@@ -31,5 +33,11 @@ public class CleanupScheduler {
         failedLoginAttemptRepository.deleteOldAttempts(oneDayAgo);
         log.info("Cleaned up old failed login attempts");
     }
-}
 
+    @Scheduled(cron = "0 30 * * * *") // Run every hour, offset from token cleanup
+    @Transactional
+    public void cleanupExpiredIdempotencyKeys() {
+        int deleted = idempotencyStore.purgeExpired();
+        log.info("Cleaned up {} expired idempotency keys", deleted);
+    }
+}
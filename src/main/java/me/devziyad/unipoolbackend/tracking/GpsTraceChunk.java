@@ -0,0 +1,43 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import jakarta.persistence.*;
+import lombok.*;
+import me.devziyad.unipoolbackend.ride.Ride;
+
+import java.time.Instant;
+
+/**
+ * A run of consecutive breadcrumbs of one ride, delta-encoded by {@link TraceCodec}. Written by
+ * {@link TraceRecorder} and never updated.
+ */
+@Entity
+@Table(name = "gps_trace_chunk", indexes = {
+    @Index(name = "idx_trace_ride_start", columnList = "ride_id, startTime")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GpsTraceChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "ride_id")
+    private Ride ride;
+
+    @Column(nullable = false)
+    private Instant startTime;
+
+    @Column(nullable = false)
+    private Instant endTime;
+
+    @Column(nullable = false)
+    private Integer pointCount;
+
+    @Column(nullable = false, length = TraceCodec.MAX_CHUNK_BYTES)
+    private byte[] data;
+}
@@ -0,0 +1,22 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import lombok.NonNull;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface GpsTraceChunkRepository extends JpaRepository<@NonNull GpsTraceChunk, @NonNull Long> {
+
+    @Query("SELECT c.id FROM GpsTraceChunk c " +
+           "WHERE c.ride.id = :rideId AND c.endTime >= :from AND c.startTime <= :to " +
+           "ORDER BY c.startTime, c.id")
+    @NonNull
+    List<@NonNull Long> findIdsOverlapping(@Param("rideId") Long rideId,
+                                           @Param("from") Instant from,
+                                           @Param("to") Instant to);
+}
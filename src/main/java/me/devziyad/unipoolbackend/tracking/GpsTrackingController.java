@@ -5,12 +5,22 @@ import lombok.Data;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import me.devziyad.unipoolbackend.auth.AuthService;
-import me.devziyad.unipoolbackend.exception.ForbiddenException;
-import me.devziyad.unipoolbackend.ride.Ride;
-import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.common.Role;
+import me.devziyad.unipoolbackend.tracking.dto.BatchLocationUpdateRequest;
+import me.devziyad.unipoolbackend.tracking.dto.BatchLocationUpdateResponse;
 import me.devziyad.unipoolbackend.tracking.dto.GpsLocationResponse;
+import me.devziyad.unipoolbackend.tracking.dto.RideEtaResponse;
+import me.devziyad.unipoolbackend.tracking.dto.TracePointResponse;
+import me.devziyad.unipoolbackend.tracking.dto.TraceStorageStatsResponse;
+import me.devziyad.unipoolbackend.user.User;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
 
 @RestController
 @RequestMapping("/api/tracking")
@@ -20,59 +30,92 @@ public class GpsTrackingController {
 
     private final GpsTrackingService trackingService;
     private final AuthService authService;
-    private final RideRepository rideRepository;
 
     @PostMapping("/{rideId}/update")
     public ResponseEntity<@NonNull Void> updateLocation(@PathVariable Long rideId,
                                                 @Valid @RequestBody UpdateLocationRequest request) {
         Long userId = authService.getCurrentUser().getId();
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new me.devziyad.unipoolbackend.exception.ResourceNotFoundException("Ride not found"));
-
-        if (!ride.getDriver().getId().equals(userId)) {
-            throw new ForbiddenException("Only the driver can update location");
-        }
-
-        trackingService.updateLocation(rideId, request.getLatitude(), request.getLongitude());
+        trackingService.updateLocation(rideId, userId, request.getLatitude(), request.getLongitude());
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Uploads points buffered while the device was offline, oldest first, in one request.
+     */
+    @PostMapping("/{rideId}/update/batch")
+    public ResponseEntity<@NonNull BatchLocationUpdateResponse> uploadLocations(
+            @PathVariable Long rideId,
+            @Valid @RequestBody BatchLocationUpdateRequest request) {
+        Long userId = authService.getCurrentUser().getId();
+        return ResponseEntity.ok(trackingService.uploadLocations(rideId, userId, request));
+    }
+
     @GetMapping("/{rideId}")
     public ResponseEntity<@NonNull GpsLocationResponse> getCurrentLocation(@PathVariable Long rideId) {
         return ResponseEntity.ok(trackingService.getCurrentLocation(rideId));
     }
 
+    @GetMapping("/{rideId}/eta")
+    public ResponseEntity<@NonNull RideEtaResponse> getEta(@PathVariable Long rideId) {
+        User user = authService.getCurrentUser();
+        return ResponseEntity.ok(trackingService.getEta(rideId, user.getRole() == Role.ADMIN ? null : user.getId()));
+    }
+
+    @GetMapping(value = "/{rideId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<@NonNull ServerSentEvent<Object>> streamLocation(@PathVariable Long rideId) {
+        Long userId = authService.getCurrentUser().getId();
+        return trackingService.openLocationStream(rideId, userId);
+    }
+
     @PostMapping("/{rideId}/start")
     public ResponseEntity<@NonNull Void> startTracking(@PathVariable Long rideId) {
         Long userId = authService.getCurrentUser().getId();
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new me.devziyad.unipoolbackend.exception.ResourceNotFoundException("Ride not found"));
-
-        if (!ride.getDriver().getId().equals(userId)) {
-            throw new ForbiddenException("Only the driver can start tracking");
-        }
-
-        trackingService.startTracking(rideId);
+        trackingService.startTracking(rideId, userId);
         return ResponseEntity.ok().build();
     }
 
     @PostMapping("/{rideId}/stop")
     public ResponseEntity<@NonNull Void> stopTracking(@PathVariable Long rideId) {
         Long userId = authService.getCurrentUser().getId();
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new me.devziyad.unipoolbackend.exception.ResourceNotFoundException("Ride not found"));
+        trackingService.stopTracking(rideId, userId);
+        return ResponseEntity.ok().build();
+    }
 
-        if (!ride.getDriver().getId().equals(userId)) {
-            throw new ForbiddenException("Only the driver can stop tracking");
-        }
+    /**
+     * Breadcrumbs of the ride between {@code from} and {@code to}, oldest first. Streamed as NDJSON when
+     * requested, otherwise returned as a JSON array.
+     */
+    @GetMapping(value = "/{rideId}/trace", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<@NonNull TracePointResponse> getTrace(
+            @PathVariable Long rideId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        checkTraceAccess(rideId);
+        return trackingService.getTrace(rideId, from, to);
+    }
 
-        trackingService.stopTracking(rideId);
-        return ResponseEntity.ok().build();
+    @GetMapping("/{rideId}/trace/stats")
+    public ResponseEntity<@NonNull TraceStorageStatsResponse> getTraceStats(@PathVariable Long rideId) {
+        checkTraceAccess(rideId);
+        return ResponseEntity.ok(trackingService.getTraceStats(rideId));
+    }
+
+    private void checkTraceAccess(Long rideId) {
+        User user = authService.getCurrentUser();
+        if (user.getRole() != Role.ADMIN) {
+            trackingService.requireTraceAccess(rideId, user.getId());
+        }
     }
 
     @Data
     public static class UpdateLocationRequest {
+        @jakarta.validation.constraints.NotNull(message = "Latitude is required")
+        @jakarta.validation.constraints.DecimalMin(value = "-90.0", message = "Latitude must be between -90 and 90")
+        @jakarta.validation.constraints.DecimalMax(value = "90.0", message = "Latitude must be between -90 and 90")
         private Double latitude;
+        @jakarta.validation.constraints.NotNull(message = "Longitude is required")
+        @jakarta.validation.constraints.DecimalMin(value = "-180.0", message = "Longitude must be between -180 and 180")
+        @jakarta.validation.constraints.DecimalMax(value = "180.0", message = "Longitude must be between -180 and 180")
         private Double longitude;
     }
 }
@@ -1,11 +1,28 @@
 package me.devziyad.unipoolbackend.tracking;
 
+import me.devziyad.unipoolbackend.tracking.dto.BatchLocationUpdateRequest;
+import me.devziyad.unipoolbackend.tracking.dto.BatchLocationUpdateResponse;
 import me.devziyad.unipoolbackend.tracking.dto.GpsLocationResponse;
+import me.devziyad.unipoolbackend.tracking.dto.RideEtaResponse;
+import me.devziyad.unipoolbackend.tracking.dto.TracePointResponse;
+import me.devziyad.unipoolbackend.tracking.dto.TraceStorageStatsResponse;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
 
 public interface GpsTrackingService {
-    void updateLocation(Long rideId, Double latitude, Double longitude);
+    void updateLocation(Long rideId, Long driverId, Double latitude, Double longitude);
+    BatchLocationUpdateResponse uploadLocations(Long rideId, Long driverId, BatchLocationUpdateRequest request);
     GpsLocationResponse getCurrentLocation(Long rideId);
-    void startTracking(Long rideId);
-    void stopTracking(Long rideId);
+    void startTracking(Long rideId, Long driverId);
+    void stopTracking(Long rideId, Long driverId);
+    /**
+     * @param viewerId the requesting user, or null for an admin; riders only see their own pickup
+     */
+    RideEtaResponse getEta(Long rideId, Long viewerId);
+    Flux<ServerSentEvent<Object>> openLocationStream(Long rideId, Long userId);
+    void requireTraceAccess(Long rideId, Long userId);
+    Flux<TracePointResponse> getTrace(Long rideId, Instant from, Instant to);
+    TraceStorageStatsResponse getTraceStats(Long rideId);
 }
-
@@ -1,87 +1,236 @@
 package me.devziyad.unipoolbackend.tracking;
 
 import lombok.RequiredArgsConstructor;
+import me.devziyad.unipoolbackend.booking.BookingRepository;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.exception.BusinessException;
+import me.devziyad.unipoolbackend.exception.ForbiddenException;
 import me.devziyad.unipoolbackend.exception.ResourceNotFoundException;
-import me.devziyad.unipoolbackend.ride.Ride;
 import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.tracking.dto.BatchLocationUpdateRequest;
+import me.devziyad.unipoolbackend.tracking.dto.BatchLocationUpdateResponse;
 import me.devziyad.unipoolbackend.tracking.dto.GpsLocationResponse;
+import me.devziyad.unipoolbackend.tracking.dto.RideEtaResponse;
+import me.devziyad.unipoolbackend.tracking.dto.TracePointResponse;
+import me.devziyad.unipoolbackend.tracking.dto.TraceStorageStatsResponse;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class GpsTrackingServiceImpl implements GpsTrackingService {
 
-    private final GpsTrackingRepository trackingRepository;
+    // Chunks decoded per query while replaying, bounding memory for long rides
+    private static final int CHUNKS_PER_READ = 16;
+    // Uploaded points further ahead of the server clock are rejected; a smaller lead is taken as device clock skew
+    private static final Duration MAX_CLOCK_SKEW = Duration.ofSeconds(30);
+
+    private final LiveLocationStore liveLocationStore;
+    private final RideLocationStreamRegistry locationStreamRegistry;
+    private final TraceRecorder traceRecorder;
+    private final RideEtaTracker rideEtaTracker;
+    private final GpsTraceChunkRepository traceChunkRepository;
     private final RideRepository rideRepository;
+    private final BookingRepository bookingRepository;
 
     @Override
-    @Transactional
-    public void updateLocation(Long rideId, Double latitude, Double longitude) {
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+    public void updateLocation(Long rideId, Long driverId, Double latitude, Double longitude) {
+        liveLocationStore.requireDriver(rideId, driverId, "update location");
+        LiveLocationStore.LivePosition position = liveLocationStore.updatePosition(rideId, latitude, longitude);
+        locationStreamRegistry.publish(rideId, toResponse(rideId, position));
+        rideEtaTracker.onPosition(rideId, latitude, longitude, position.getLastUpdate());
+        traceRecorder.record(rideId, latitude, longitude, position.getLastUpdate());
+    }
 
-        GpsTracking tracking = trackingRepository.findByRideId(rideId)
-                .orElseGet(() -> {
-                    GpsTracking newTracking = GpsTracking.builder()
-                            .ride(ride)
-                            .latitude(latitude)
-                            .longitude(longitude)
-                            .isActive(false)
-                            .build();
-                    return trackingRepository.save(newTracking);
-                });
+    @Override
+    public BatchLocationUpdateResponse uploadLocations(Long rideId, Long driverId, BatchLocationUpdateRequest request) {
+        liveLocationStore.requireDriver(rideId, driverId, "update location");
+
+        long now = Instant.now().toEpochMilli();
+        long latestAllowed = now + MAX_CLOCK_SKEW.toMillis();
+        long newestUploaded = Long.MIN_VALUE;
+        for (BatchLocationUpdateRequest.Point point : request.getPoints()) {
+            long millis = point.getTimestamp().toEpochMilli();
+            if (millis <= latestAllowed) {
+                newestUploaded = Math.max(newestUploaded, millis);
+            }
+        }
+        // Live pings are recorded at server time, so a device clock running ahead is shifted back by its lead;
+        // otherwise every ping until the server caught up would fall before the batch and be dropped
+        long lead = Math.max(0, newestUploaded - now);
+        List<TraceRecorder.TracePoint> points = new ArrayList<>(request.getPoints().size());
+        for (BatchLocationUpdateRequest.Point point : request.getPoints()) {
+            long millis = point.getTimestamp().toEpochMilli();
+            if (millis <= latestAllowed) {
+                points.add(new TraceRecorder.TracePoint(point.getLatitude(), point.getLongitude(), millis - lead));
+            }
+        }
+        List<TraceRecorder.TracePoint> accepted = traceRecorder.recordAll(rideId, points);
 
-        tracking.setLatitude(latitude);
-        tracking.setLongitude(longitude);
-        tracking.setLastUpdate(Instant.now());
-        trackingRepository.save(tracking);
+        // Only the newest point matters to the live position and its followers
+        if (!accepted.isEmpty()) {
+            TraceRecorder.TracePoint newest = accepted.get(accepted.size() - 1);
+            liveLocationStore.updatePositionIfNewer(rideId, newest.getLatitude(), newest.getLongitude(),
+                            Instant.ofEpochMilli(newest.getEpochMillis()))
+                    .ifPresent(position -> {
+                        locationStreamRegistry.publish(rideId, toResponse(rideId, position));
+                        rideEtaTracker.onPosition(rideId, position.getLatitude(), position.getLongitude(),
+                                position.getLastUpdate());
+                    });
+        }
+
+        return BatchLocationUpdateResponse.builder()
+                .accepted(accepted.size())
+                .dropped(request.getPoints().size() - accepted.size())
+                .current(liveLocationStore.get(rideId).map(position -> toResponse(rideId, position)).orElse(null))
+                .build();
     }
 
     @Override
     public GpsLocationResponse getCurrentLocation(Long rideId) {
-        GpsTracking tracking = trackingRepository.findByRideId(rideId)
+        return liveLocationStore.get(rideId)
+                .map(position -> toResponse(rideId, position))
                 .orElseThrow(() -> new ResourceNotFoundException("Tracking not found for this ride"));
+    }
 
-        return GpsLocationResponse.builder()
-                .rideId(rideId)
-                .latitude(tracking.getLatitude())
-                .longitude(tracking.getLongitude())
-                .lastUpdate(tracking.getLastUpdate())
-                .isActive(tracking.getIsActive())
-                .build();
+    @Override
+    public void startTracking(Long rideId, Long driverId) {
+        liveLocationStore.requireDriver(rideId, driverId, "start tracking");
+        locationStreamRegistry.publish(rideId, toResponse(rideId, liveLocationStore.setActive(rideId, true)));
+    }
+
+    @Override
+    public void stopTracking(Long rideId, Long driverId) {
+        liveLocationStore.requireDriver(rideId, driverId, "stop tracking");
+        if (liveLocationStore.get(rideId).isEmpty()) {
+            throw new ResourceNotFoundException("Tracking not found");
+        }
+        locationStreamRegistry.publish(rideId, toResponse(rideId, liveLocationStore.setActive(rideId, false)));
+        traceRecorder.seal(rideId);
     }
 
     @Override
-    @Transactional
-    public void startTracking(Long rideId) {
-        Ride ride = rideRepository.findById(rideId)
+    public RideEtaResponse getEta(Long rideId, Long viewerId) {
+        Long riderId = null;
+        if (viewerId != null) {
+            Long driverId = rideRepository.findDriverIdById(rideId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+            if (!driverId.equals(viewerId)) {
+                boolean confirmedRider = bookingRepository.findByRideIdAndRiderId(rideId, viewerId)
+                        .filter(booking -> booking.getStatus() == BookingStatus.CONFIRMED)
+                        .isPresent();
+                if (!confirmedRider) {
+                    throw new ForbiddenException("Only the driver and confirmed riders can view this ride's ETA");
+                }
+                // Riders only see their own pickup
+                riderId = viewerId;
+            }
+        }
+        LiveLocationStore.LivePosition position = liveLocationStore.get(rideId)
+                .filter(p -> p.getLatitude() != null)
+                .orElseThrow(() -> new ResourceNotFoundException("No position reported for this ride yet"));
+        RideEtaResponse eta = rideEtaTracker.estimate(rideId, position.getLatitude(), position.getLongitude(),
+                position.getLastUpdate(), riderId);
+        if (eta == null) {
+            throw new ResourceNotFoundException("Ride not found");
+        }
+        return eta;
+    }
+
+    @Override
+    public Flux<ServerSentEvent<Object>> openLocationStream(Long rideId, Long userId) {
+        Long driverId = rideRepository.findDriverIdById(rideId)
+                .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        boolean confirmedRider = bookingRepository.findByRideIdAndRiderId(rideId, userId)
+                .filter(booking -> booking.getStatus() == BookingStatus.CONFIRMED)
+                .isPresent();
+        if (!driverId.equals(userId) && !confirmedRider) {
+            throw new ForbiddenException("Only the driver and confirmed riders can follow this ride");
+        }
+        return locationStreamRegistry.open(rideId,
+                () -> liveLocationStore.get(rideId).map(position -> toResponse(rideId, position)));
+    }
+
+    @Override
+    public void requireTraceAccess(Long rideId, Long userId) {
+        Long driverId = rideRepository.findDriverIdById(rideId)
                 .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+        // Completed riders keep access so they can review a finished ride
+        boolean rider = bookingRepository.findByRideIdAndRiderId(rideId, userId)
+                .filter(booking -> booking.getStatus() == BookingStatus.CONFIRMED
+                        || booking.getStatus() == BookingStatus.COMPLETED)
+                .isPresent();
+        if (!driverId.equals(userId) && !rider) {
+            throw new ForbiddenException("Only the driver and confirmed riders can view this ride's trace");
+        }
+    }
 
-        GpsTracking tracking = trackingRepository.findByRideId(rideId)
-                .orElseGet(() -> {
-                    GpsTracking newTracking = GpsTracking.builder()
-                            .ride(ride)
-                            .isActive(true)
-                            .build();
-                    return trackingRepository.save(newTracking);
+    @Override
+    public Flux<TracePointResponse> getTrace(Long rideId, Instant from, Instant to) {
+        if (!rideRepository.existsById(rideId)) {
+            throw new ResourceNotFoundException("Ride not found");
+        }
+        Instant start = from != null ? from : Instant.EPOCH;
+        Instant end = to != null ? to : Instant.now();
+        if (start.isAfter(end)) {
+            throw new BusinessException("from must not be after to");
+        }
+        long startMillis = start.toEpochMilli();
+        long endMillis = end.toEpochMilli();
+
+        // Taken before listing chunks: anything sealed in between is then in both, and skipped below
+        List<TraceRecorder.TracePoint> pending = traceRecorder.pending(rideId);
+        List<Long> chunkIds = traceChunkRepository.findIdsOverlapping(rideId, start, end);
+        long[] lastSealed = {Long.MIN_VALUE};
+
+        Flux<TraceRecorder.TracePoint> sealed = Flux.fromIterable(chunkIds)
+                .buffer(CHUNKS_PER_READ)
+                .concatMapIterable(ids -> {
+                    List<GpsTraceChunk> chunks = new ArrayList<>(traceChunkRepository.findAllById(ids));
+                    chunks.sort(Comparator.comparing(GpsTraceChunk::getStartTime).thenComparing(GpsTraceChunk::getId));
+                    List<TraceRecorder.TracePoint> points = new ArrayList<>();
+                    for (GpsTraceChunk chunk : chunks) {
+                        TraceCodec.decode(chunk.getData(), chunk.getStartTime(), chunk.getPointCount(),
+                                (latitude, longitude, millis) ->
+                                        points.add(new TraceRecorder.TracePoint(latitude, longitude, millis)));
+                        lastSealed[0] = Math.max(lastSealed[0], chunk.getEndTime().toEpochMilli());
+                    }
+                    return points;
                 });
+        Flux<TraceRecorder.TracePoint> unsealed = Flux.defer(() -> Flux.fromIterable(pending))
+                .filter(point -> point.getEpochMillis() > lastSealed[0]);
 
-        tracking.setIsActive(true);
-        tracking.setLastUpdate(Instant.now());
-        trackingRepository.save(tracking);
+        return Flux.concat(sealed, unsealed)
+                .filter(point -> point.getEpochMillis() >= startMillis && point.getEpochMillis() <= endMillis)
+                .map(point -> TracePointResponse.builder()
+                        .latitude(point.getLatitude())
+                        .longitude(point.getLongitude())
+                        .timestamp(Instant.ofEpochMilli(point.getEpochMillis()))
+                        .build());
     }
 
     @Override
-    @Transactional
-    public void stopTracking(Long rideId) {
-        GpsTracking tracking = trackingRepository.findByRideId(rideId)
-                .orElseThrow(() -> new ResourceNotFoundException("Tracking not found"));
+    public TraceStorageStatsResponse getTraceStats(Long rideId) {
+        if (!rideRepository.existsById(rideId)) {
+            throw new ResourceNotFoundException("Ride not found");
+        }
+        return traceRecorder.stats(rideId);
+    }
 
-        tracking.setIsActive(false);
-        trackingRepository.save(tracking);
+    private static GpsLocationResponse toResponse(Long rideId, LiveLocationStore.LivePosition position) {
+        return GpsLocationResponse.builder()
+                .rideId(rideId)
+                .latitude(position.getLatitude())
+                .longitude(position.getLongitude())
+                .lastUpdate(position.getLastUpdate())
+                .isActive(position.isActive())
+                .build();
     }
 }
-
@@ -0,0 +1,301 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.exception.ForbiddenException;
+import me.devziyad.unipoolbackend.exception.ResourceNotFoundException;
+import me.devziyad.unipoolbackend.ride.RideRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live position of each tracked ride, kept in memory and written behind to {@code gps_tracking}.
+ * Pings only replace the ride's entry and mark it dirty; every {@code flush-millis} the dirty entries are
+ * written in one JDBC batch. Reads are served from memory, falling back to the table for rides not seen
+ * since startup. Entries idle for {@code idle-minutes} are dropped once written.
+ * <p>
+ * A crash loses at most the last flush interval of pings, which the next ping replaces anyway.
+ */
+@Component
+@Slf4j
+public class LiveLocationStore {
+
+    private static final String UPDATE_TRACKING =
+            "UPDATE gps_tracking SET latitude = ?, longitude = ?, last_update = ?, is_active = ? WHERE ride_id = ?";
+    // Before the first position there is nothing to insert; only an existing row's state is updated
+    private static final String UPDATE_TRACKING_STATE =
+            "UPDATE gps_tracking SET last_update = ?, is_active = ? WHERE ride_id = ?";
+    private static final String INSERT_TRACKING =
+            "INSERT INTO gps_tracking (ride_id, latitude, longitude, last_update, is_active) VALUES (?, ?, ?, ?, ?)";
+
+    private final GpsTrackingRepository trackingRepository;
+    private final RideRepository rideRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration idleTimeout;
+
+    private final Map<Long, LivePosition> positions = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // rideId -> driverId, so pings are authorized without loading the ride
+    private final Map<Long, Long> drivers = new ConcurrentHashMap<>();
+
+    public LiveLocationStore(GpsTrackingRepository trackingRepository,
+                             RideRepository rideRepository,
+                             JdbcTemplate jdbcTemplate,
+                             @Value("${tracking.live.idle-minutes:30}") long idleMinutes) {
+        this.trackingRepository = trackingRepository;
+        this.rideRepository = rideRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.idleTimeout = Duration.ofMinutes(idleMinutes);
+    }
+
+    /**
+     * @throws ResourceNotFoundException if the ride doesn't exist
+     * @throws ForbiddenException if {@code userId} isn't the ride's driver
+     */
+    public void requireDriver(Long rideId, Long userId, String action) {
+        Long driverId = drivers.get(rideId);
+        if (driverId == null) {
+            driverId = rideRepository.findDriverIdById(rideId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Ride not found"));
+            drivers.put(rideId, driverId);
+        }
+        if (!driverId.equals(userId)) {
+            throw new ForbiddenException("Only the driver can " + action);
+        }
+    }
+
+    /**
+     * @return the ride's new position
+     */
+    public LivePosition updatePosition(Long rideId, double latitude, double longitude) {
+        Instant now = Instant.now();
+        // The stored state is only needed for a ride not in memory; loaded outside compute to keep its lock short
+        LivePosition stored = positions.containsKey(rideId) ? null : load(rideId).orElse(null);
+        LivePosition updated = positions.compute(rideId, (id, current) -> {
+            LivePosition base = current != null ? current : stored;
+            return new LivePosition(latitude, longitude, now, base != null && base.active);
+        });
+        dirty.add(rideId);
+        return updated;
+    }
+
+    /**
+     * Applies a position measured at {@code time}, such as the newest point of an uploaded batch, unless a
+     * newer one is already known.
+     *
+     * @return the ride's new position, or empty if it was left unchanged
+     */
+    public Optional<LivePosition> updatePositionIfNewer(Long rideId, double latitude, double longitude, Instant time) {
+        LivePosition stored = positions.containsKey(rideId) ? null : load(rideId).orElse(null);
+        boolean[] applied = {false};
+        LivePosition updated = positions.compute(rideId, (id, current) -> {
+            LivePosition base = current != null ? current : stored;
+            // A ride started but never positioned takes any point
+            if (base != null && base.latitude != null && !time.isAfter(base.lastUpdate)) {
+                return current;
+            }
+            applied[0] = true;
+            return new LivePosition(latitude, longitude, time, base != null && base.active);
+        });
+        if (!applied[0]) {
+            return Optional.empty();
+        }
+        dirty.add(rideId);
+        return Optional.of(updated);
+    }
+
+    /**
+     * @return the ride's new position
+     */
+    public LivePosition setActive(Long rideId, boolean active) {
+        Instant now = Instant.now();
+        LivePosition stored = positions.containsKey(rideId) ? null : load(rideId).orElse(null);
+        LivePosition updated = positions.compute(rideId, (id, current) -> {
+            LivePosition base = current != null ? current : stored;
+            return base != null
+                    ? new LivePosition(base.latitude, base.longitude, now, active)
+                    : new LivePosition(null, null, now, active);
+        });
+        dirty.add(rideId);
+        return updated;
+    }
+
+    /**
+     * @return the ride's position, or empty if it has never been tracked
+     */
+    public Optional<LivePosition> get(Long rideId) {
+        LivePosition position = positions.get(rideId);
+        if (position != null) {
+            return Optional.of(position);
+        }
+        Optional<LivePosition> stored = load(rideId);
+        // Only cached if no ping arrived meanwhile
+        stored.ifPresent(p -> positions.putIfAbsent(rideId, p));
+        return stored.map(p -> positions.getOrDefault(rideId, p));
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.live.flush-millis:5000}")
+    public void flushScheduled() {
+        flush();
+        evictIdle();
+    }
+
+    /**
+     * Writes every dirty position to {@code gps_tracking} in one batch.
+     *
+     * @return number of rides written
+     */
+    public synchronized int flush() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        List<Long> rideIds = new ArrayList<>();
+        List<LivePosition> snapshot = new ArrayList<>();
+        for (Long rideId : dirty) {
+            // Removed before reading, so a ping arriving now marks the ride dirty again
+            dirty.remove(rideId);
+            LivePosition position = positions.get(rideId);
+            if (position != null) {
+                rideIds.add(rideId);
+                snapshot.add(position);
+            }
+        }
+        try {
+            write(rideIds, snapshot);
+            return rideIds.size();
+        } catch (DataAccessException e) {
+            // One bad row (e.g. its ride was deleted) must not block the rest; retry them one by one
+            log.warn("Batch of {} live positions failed, writing individually", rideIds.size(), e);
+            int written = 0;
+            for (int i = 0; i < rideIds.size(); i++) {
+                try {
+                    write(List.of(rideIds.get(i)), List.of(snapshot.get(i)));
+                    written++;
+                } catch (DataAccessException rowFailure) {
+                    log.warn("Dropping live position of ride {}", rideIds.get(i), rowFailure);
+                    positions.remove(rideIds.get(i), snapshot.get(i));
+                }
+            }
+            return written;
+        }
+    }
+
+    public synchronized void clear() {
+        positions.clear();
+        dirty.clear();
+        drivers.clear();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int written = flush();
+        log.info("Wrote {} live positions on shutdown", written);
+    }
+
+    private void write(List<Long> rideIds, List<LivePosition> snapshot) {
+        List<Integer> positioned = new ArrayList<>();
+        List<Integer> stateOnly = new ArrayList<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            (snapshot.get(i).latitude != null ? positioned : stateOnly).add(i);
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        if (!positioned.isEmpty()) {
+            int[] updated = jdbcTemplate.batchUpdate(UPDATE_TRACKING, positioned, positioned.size(), (ps, i) -> {
+                LivePosition position = snapshot.get(i);
+                ps.setDouble(1, position.latitude);
+                ps.setDouble(2, position.longitude);
+                ps.setObject(3, toTimestamp(position.lastUpdate));
+                ps.setBoolean(4, position.active);
+                ps.setLong(5, rideIds.get(i));
+            })[0];
+            for (int k = 0; k < positioned.size(); k++) {
+                if (updated[k] == 0) {
+                    missing.add(positioned.get(k));
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TRACKING, missing, missing.size(), (ps, i) -> {
+                LivePosition position = snapshot.get(i);
+                ps.setLong(1, rideIds.get(i));
+                ps.setDouble(2, position.latitude);
+                ps.setDouble(3, position.longitude);
+                ps.setObject(4, toTimestamp(position.lastUpdate));
+                ps.setBoolean(5, position.active);
+            });
+        }
+        if (!stateOnly.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_TRACKING_STATE, stateOnly, stateOnly.size(), (ps, i) -> {
+                LivePosition position = snapshot.get(i);
+                ps.setObject(1, toTimestamp(position.lastUpdate));
+                ps.setBoolean(2, position.active);
+                ps.setLong(3, rideIds.get(i));
+            });
+        }
+    }
+
+    private void evictIdle() {
+        Instant cutoff = Instant.now().minus(idleTimeout);
+        positions.forEach((rideId, position) -> {
+            if (position.lastUpdate.isBefore(cutoff) && !dirty.contains(rideId)) {
+                positions.remove(rideId, position);
+                drivers.remove(rideId);
+            }
+        });
+    }
+
+    private Optional<LivePosition> load(Long rideId) {
+        return trackingRepository.findByRideId(rideId)
+                .map(t -> new LivePosition(t.getLatitude(), t.getLongitude(), t.getLastUpdate(),
+                        Boolean.TRUE.equals(t.getIsActive())));
+    }
+
+    private static OffsetDateTime toTimestamp(Instant instant) {
+        return OffsetDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    public static final class LivePosition {
+        private final Double latitude;
+        private final Double longitude;
+        private final Instant lastUpdate;
+        private final boolean active;
+
+        private LivePosition(Double latitude, Double longitude, Instant lastUpdate, boolean active) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.lastUpdate = lastUpdate;
+            this.active = active;
+        }
+
+        public Double getLatitude() {
+            return latitude;
+        }
+
+        public Double getLongitude() {
+            return longitude;
+        }
+
+        public Instant getLastUpdate() {
+            return lastUpdate;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+    }
+}
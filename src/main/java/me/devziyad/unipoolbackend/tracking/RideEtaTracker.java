@@ -0,0 +1,276 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.booking.Booking;
+import me.devziyad.unipoolbackend.booking.BookingRepository;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideChangedEvent;
+import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.route.RouteChangedEvent;
+import me.devziyad.unipoolbackend.route.RouteGeometry;
+import me.devziyad.unipoolbackend.route.RouteGeometryCache;
+import me.devziyad.unipoolbackend.tracking.dto.RideEtaResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Arrival estimates of tracked rides against their route. The first request for a ride prepares it: the
+ * route geometry, each confirmed pickup's position along the route and the ride's minutes per route km.
+ * After that each ping only reprojects the driver onto the few segments around the last match, falling
+ * back to the whole route when the driver has left that window.
+ * <p>
+ * Only rides someone has asked about are prepared; they are dropped when the ride, its bookings or its
+ * route change, and after {@code idle-minutes} without a request.
+ */
+@Component
+@Slf4j
+public class RideEtaTracker {
+
+    // Segments searched behind and ahead of the last match on each ping
+    private static final int SEGMENTS_BEHIND = 1;
+    private static final int SEGMENTS_AHEAD = 8;
+    // Beyond this from the windowed match, the driver may have jumped; search the whole route
+    private static final double WINDOW_MISS_KM = 0.1;
+    // A pickup this far behind the driver counts as passed rather than as GPS jitter
+    private static final double PASSED_TOLERANCE_KM = 0.05;
+    // For rides whose estimated duration is missing or whose route has no length
+    private static final double FALLBACK_MINUTES_PER_KM = 2.0;
+
+    private final RideRepository rideRepository;
+    private final BookingRepository bookingRepository;
+    private final RouteGeometryCache routeGeometryCache;
+    private final double offRouteKm;
+    private final Duration idleTimeout;
+
+    private final Map<Long, PreparedRide> rides = new ConcurrentHashMap<>();
+    // Bumped on every eviction so a preparation that raced with a change doesn't cache stale pickups
+    private final AtomicLong generation = new AtomicLong();
+
+    public RideEtaTracker(RideRepository rideRepository,
+                          BookingRepository bookingRepository,
+                          RouteGeometryCache routeGeometryCache,
+                          @Value("${tracking.eta.off-route-meters:500}") double offRouteMeters,
+                          @Value("${tracking.eta.idle-minutes:30}") long idleMinutes) {
+        this.rideRepository = rideRepository;
+        this.bookingRepository = bookingRepository;
+        this.routeGeometryCache = routeGeometryCache;
+        this.offRouteKm = offRouteMeters / 1000.0;
+        this.idleTimeout = Duration.ofMinutes(idleMinutes);
+    }
+
+    /**
+     * Moves a prepared ride's driver to (lat, lon). Rides nobody asked about are left alone, so pings stay cheap.
+     */
+    public void onPosition(Long rideId, double latitude, double longitude, Instant time) {
+        PreparedRide ride = rides.get(rideId);
+        if (ride != null) {
+            ride.move(latitude, longitude, time);
+        }
+    }
+
+    /**
+     * Estimates for the driver at (lat, lon), measured at {@code time}.
+     *
+     * @param riderId only this rider's pickup is included, or every pickup when null
+     * @return the estimate, or null if the ride doesn't exist
+     */
+    public RideEtaResponse estimate(Long rideId, double latitude, double longitude, Instant time, Long riderId) {
+        PreparedRide ride = rides.get(rideId);
+        if (ride == null) {
+            ride = prepare(rideId);
+            if (ride == null) {
+                return null;
+            }
+        }
+        ride.lastAccess = Instant.now();
+        // Covers a prepared ride that missed pings, such as one prepared from a stale snapshot
+        ride.move(latitude, longitude, time);
+        return ride.estimate(rideId, riderId, offRouteKm);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRideChanged(RideChangedEvent event) {
+        // Pickups or route may have changed; prepared again on the next request
+        generation.incrementAndGet();
+        rides.remove(event.getRideId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRouteChanged(RouteChangedEvent event) {
+        generation.incrementAndGet();
+        rides.values().removeIf(ride -> event.getRouteId().equals(ride.routeId));
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.live.flush-millis:5000}")
+    public void evictIdle() {
+        Instant cutoff = Instant.now().minus(idleTimeout);
+        rides.values().removeIf(ride -> ride.lastAccess.isBefore(cutoff));
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        rides.clear();
+    }
+
+    private PreparedRide prepare(Long rideId) {
+        long preparedGeneration = generation.get();
+        Ride ride = rideRepository.findById(rideId).orElse(null);
+        if (ride == null) {
+            return null;
+        }
+        Long routeId = ride.getRoute() != null ? ride.getRoute().getId() : null;
+        RouteGeometry geometry = routeId != null ? routeGeometryCache.get(routeId) : null;
+        if (geometry == null) {
+            geometry = RouteGeometry.straightLine(
+                    ride.getPickupLocation().getLatitude(), ride.getPickupLocation().getLongitude(),
+                    ride.getDestinationLocation().getLatitude(), ride.getDestinationLocation().getLongitude());
+        }
+
+        // The ride's own estimate spread over the geometry's length, so simplification and straight-line
+        // fallbacks still add up to the estimated duration
+        double minutesPerKm = ride.getEstimatedDurationMinutes() != null && ride.getEstimatedDurationMinutes() > 0
+                && geometry.lengthKm() > 0
+                ? ride.getEstimatedDurationMinutes() / geometry.lengthKm()
+                : FALLBACK_MINUTES_PER_KM;
+
+        List<Pickup> pickups = new ArrayList<>();
+        for (Booking booking : bookingRepository.findByRideIdAndStatusOrderByCreatedAtInstantAscIdAsc(
+                rideId, BookingStatus.CONFIRMED)) {
+            double pickupLatitude = booking.getPickupLocation().getLatitude();
+            double pickupLongitude = booking.getPickupLocation().getLongitude();
+            RouteGeometry.Projection projection = geometry.project(pickupLatitude, pickupLongitude);
+            pickups.add(new Pickup(booking.getId(), booking.getRider().getId(), booking.getPickupLocation().getLabel(),
+                    projection.getAlongKm(), projection.getDistanceKm()));
+        }
+
+        PreparedRide prepared = new PreparedRide(routeId, geometry, minutesPerKm, pickups);
+        synchronized (this) {
+            if (generation.get() != preparedGeneration) {
+                // Still usable for this request, just not cached
+                return prepared;
+            }
+            PreparedRide existing = rides.putIfAbsent(rideId, prepared);
+            log.debug("Prepared ETA of ride {} with {} pickups over {} segments",
+                    rideId, pickups.size(), geometry.segmentCount());
+            return existing != null ? existing : prepared;
+        }
+    }
+
+    private static final class Pickup {
+        private final Long bookingId;
+        private final Long riderId;
+        private final String label;
+        private final double alongKm;
+        // The pickup itself may be off the route; the driver has to cover that too
+        private final double offsetKm;
+
+        private Pickup(Long bookingId, Long riderId, String label, double alongKm, double offsetKm) {
+            this.bookingId = bookingId;
+            this.riderId = riderId;
+            this.label = label;
+            this.alongKm = alongKm;
+            this.offsetKm = offsetKm;
+        }
+    }
+
+    private static final class PreparedRide {
+        private final Long routeId;
+        private final RouteGeometry geometry;
+        private final double minutesPerKm;
+        private final List<Pickup> pickups;
+        private volatile Instant lastAccess = Instant.now();
+
+        private int segment = -1;
+        private double latitude;
+        private double longitude;
+        private Instant time;
+        private double alongKm;
+        private double distanceKm;
+
+        private PreparedRide(Long routeId, RouteGeometry geometry, double minutesPerKm, List<Pickup> pickups) {
+            this.routeId = routeId;
+            this.geometry = geometry;
+            this.minutesPerKm = minutesPerKm;
+            this.pickups = pickups;
+        }
+
+        private synchronized void move(double latitude, double longitude, Instant time) {
+            if (this.time != null && !time.isAfter(this.time)) {
+                return;
+            }
+            RouteGeometry.Projection projection = null;
+            if (segment >= 0) {
+                projection = geometry.project(latitude, longitude, segment - SEGMENTS_BEHIND, segment + SEGMENTS_AHEAD);
+                if (projection.getDistanceKm() > WINDOW_MISS_KM) {
+                    projection = null;
+                }
+            }
+            if (projection == null) {
+                projection = geometry.project(latitude, longitude);
+            }
+            this.segment = projection.getSegment();
+            this.alongKm = projection.getAlongKm();
+            this.distanceKm = projection.getDistanceKm();
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.time = time;
+        }
+
+        private synchronized RideEtaResponse estimate(Long rideId, Long riderId, double offRouteKm) {
+            double remainingKm = distanceKm + Math.max(0, geometry.lengthKm() - alongKm);
+            List<RideEtaResponse.PickupEta> pickupEtas = new ArrayList<>();
+            for (Pickup pickup : pickups) {
+                if (riderId != null && !Objects.equals(riderId, pickup.riderId)) {
+                    continue;
+                }
+                boolean passed = pickup.alongKm < alongKm - PASSED_TOLERANCE_KM;
+                double pickupKm = passed ? 0 : distanceKm + Math.max(0, pickup.alongKm - alongKm) + pickup.offsetKm;
+                Instant eta = arrival(pickupKm);
+                pickupEtas.add(RideEtaResponse.PickupEta.builder()
+                        .bookingId(pickup.bookingId)
+                        .riderId(pickup.riderId)
+                        .label(pickup.label)
+                        .remainingKm(pickupKm)
+                        .minutes(minutesUntil(eta))
+                        .eta(eta)
+                        .passed(passed)
+                        .build());
+            }
+            Instant destinationEta = arrival(remainingKm);
+            return RideEtaResponse.builder()
+                    .rideId(rideId)
+                    .latitude(latitude)
+                    .longitude(longitude)
+                    .lastUpdate(time)
+                    .distanceFromRouteKm(distanceKm)
+                    .offRoute(distanceKm > offRouteKm)
+                    .remainingKm(remainingKm)
+                    .minutesToDestination(minutesUntil(destinationEta))
+                    .destinationEta(destinationEta)
+                    .pickups(pickupEtas)
+                    .build();
+        }
+
+        // Measured from the ping, not from now, so a stale position doesn't push arrivals back
+        private Instant arrival(double km) {
+            return time.plusSeconds(Math.round(km * minutesPerKm * 60));
+        }
+
+        private static int minutesUntil(Instant eta) {
+            long seconds = Duration.between(Instant.now(), eta).getSeconds();
+            return (int) Math.max(0, (seconds + 59) / 60);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import me.devziyad.unipoolbackend.tracking.dto.GpsLocationResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Server-sent event streams of live ride positions. Each driver update is published once to its ride's
+ * channel and fanned out to every open stream of that ride, so the cost of following a ride no longer
+ * grows with riders times poll rate.
+ * <p>
+ * Positions are coalesced: a stream keeps only the newest undelivered position, so a slow client skips
+ * stale updates instead of queueing them. Channels exist only while a ride has open streams.
+ */
+@Component
+public class RideLocationStreamRegistry {
+
+    public static final String LOCATION_EVENT = "location";
+
+    private final Duration heartbeat;
+    private final Duration maxDuration;
+
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+    public RideLocationStreamRegistry(@Value("${tracking.stream.heartbeat-seconds:15}") long heartbeatSeconds,
+                                      @Value("${tracking.stream.max-duration-minutes:30}") long maxDurationMinutes) {
+        this.heartbeat = Duration.ofSeconds(heartbeatSeconds);
+        this.maxDuration = Duration.ofMinutes(maxDurationMinutes);
+    }
+
+    /**
+     * Opens a stream of {@code rideId}'s positions. It starts with the current position, if any, and then
+     * carries a {@value #LOCATION_EVENT} event per update.
+     *
+     * @param current the stored position, only read when the ride has no channel yet
+     */
+    public Flux<ServerSentEvent<Object>> open(Long rideId, Supplier<Optional<GpsLocationResponse>> current) {
+        return Flux.defer(() -> {
+            Channel channel = acquire(rideId);
+            // Seeded after the channel is registered, so an update arriving meanwhile is never overwritten
+            channel.seed(current);
+
+            Flux<ServerSentEvent<Object>> positions = channel.sink.asFlux()
+                    .onBackpressureLatest()
+                    .map(RideLocationStreamRegistry::locationEvent);
+            Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(heartbeat)
+                    .map(tick -> ServerSentEvent.builder().comment("heartbeat").build())
+                    .onBackpressureDrop()
+                    .takeUntilOther(channel.closed.asMono());
+            return Flux.merge(positions, heartbeats)
+                    .take(maxDuration)
+                    .doFinally(signal -> release(rideId));
+        });
+    }
+
+    public void publish(Long rideId, GpsLocationResponse position) {
+        Channel channel = channels.get(rideId);
+        if (channel != null) {
+            channel.publish(position);
+        }
+    }
+
+    /**
+     * Closes every open stream, for the admin database reset.
+     */
+    public void closeAll() {
+        channels.values().forEach(Channel::close);
+        channels.clear();
+    }
+
+    private Channel acquire(Long rideId) {
+        return channels.compute(rideId, (id, channel) -> {
+            Channel acquired = channel != null ? channel : new Channel();
+            acquired.streams++;
+            return acquired;
+        });
+    }
+
+    private void release(Long rideId) {
+        channels.computeIfPresent(rideId, (id, channel) -> --channel.streams == 0 ? null : channel);
+    }
+
+    private static ServerSentEvent<Object> locationEvent(GpsLocationResponse position) {
+        return ServerSentEvent.builder()
+                .event(LOCATION_EVENT)
+                .data(position)
+                .build();
+    }
+
+    private static final class Channel {
+        // Replays the latest position to each new stream, then every later one
+        private final Sinks.Many<GpsLocationResponse> sink = Sinks.many().replay().latest();
+        private final Sinks.Empty<Void> closed = Sinks.empty();
+        // Guarded by the channels map's lock
+        private int streams;
+        private boolean hasPosition;
+
+        private synchronized void seed(Supplier<Optional<GpsLocationResponse>> current) {
+            if (!hasPosition) {
+                current.get().ifPresent(this::publish);
+            }
+        }
+
+        private synchronized void publish(GpsLocationResponse position) {
+            hasPosition = true;
+            sink.tryEmitNext(position);
+        }
+
+        private synchronized void close() {
+            sink.tryEmitComplete();
+            closed.tryEmitEmpty();
+        }
+    }
+}
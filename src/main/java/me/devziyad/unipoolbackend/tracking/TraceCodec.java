@@ -0,0 +1,108 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Encoding of breadcrumb chunks. Coordinates are fixed-point at 1e-5 degrees (about 1.1 m, finer than
+ * phone GPS) and time at milliseconds. Each point is stored as its difference from the previous one,
+ * zigzag-encoded into a variable-length integer, so a ping a few seconds and tens of metres after the last
+ * takes about six bytes instead of a row. The first point is relative to (0, 0, chunk start time).
+ */
+final class TraceCodec {
+
+    static final double SCALE = 1e5;
+    // Worst case is 5 + 5 + 10 bytes per point
+    static final int MAX_CHUNK_POINTS = 3000;
+    static final int MAX_CHUNK_BYTES = MAX_CHUNK_POINTS * 20;
+
+    private TraceCodec() {
+    }
+
+    static int quantize(double degrees) {
+        return (int) Math.round(degrees * SCALE);
+    }
+
+    /**
+     * Encodes {@code count} points starting at {@code from}. Times are epoch milliseconds and must not
+     * decrease.
+     */
+    static byte[] encode(long[] times, int[] latitudes, int[] longitudes, int from, int count) {
+        Writer writer = new Writer(count * 6 + 16);
+        long previousTime = times[from];
+        int previousLatitude = 0;
+        int previousLongitude = 0;
+        for (int i = from; i < from + count; i++) {
+            writer.writeSigned(latitudes[i] - previousLatitude);
+            writer.writeSigned(longitudes[i] - previousLongitude);
+            writer.writeUnsigned(times[i] - previousTime);
+            previousLatitude = latitudes[i];
+            previousLongitude = longitudes[i];
+            previousTime = times[i];
+        }
+        return writer.toByteArray();
+    }
+
+    static void decode(byte[] data, Instant startTime, int pointCount, PointConsumer consumer) {
+        int[] position = {0};
+        long time = startTime.toEpochMilli();
+        int latitude = 0;
+        int longitude = 0;
+        for (int i = 0; i < pointCount; i++) {
+            latitude += (int) readSigned(data, position);
+            longitude += (int) readSigned(data, position);
+            time += readUnsigned(data, position);
+            consumer.accept(latitude / SCALE, longitude / SCALE, time);
+        }
+    }
+
+    private static long readSigned(byte[] data, int[] position) {
+        long zigzag = readUnsigned(data, position);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static long readUnsigned(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(double latitude, double longitude, long epochMillis);
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        private Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) {
+            if (size + 10 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.tracking.dto.TraceStorageStatsResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Breadcrumb history of each ride. Pings are appended to an in-memory buffer per ride, and a buffer is
+ * sealed into a {@link GpsTraceChunk} once it holds {@code chunk-points} points or its oldest point is
+ * {@code chunk-seconds} old, when tracking stops, and on shutdown. A crash loses at most the unsealed tail.
+ * <p>
+ * A buffer that stays empty after its chunks are written is dropped. When the ride reports again, the new
+ * buffer continues from the end of the ride's last sealed chunk, so a re-sent batch is still recognised as
+ * a duplicate.
+ */
+@Component
+@Slf4j
+public class TraceRecorder {
+
+    private static final String INSERT_CHUNK =
+            "INSERT INTO gps_trace_chunk (ride_id, start_time, end_time, point_count, data) VALUES (?, ?, ?, ?, ?)";
+    private static final String STATS =
+            "SELECT ride_id, COUNT(*) AS chunks, SUM(point_count) AS points, SUM(OCTET_LENGTH(data)) AS bytes, " +
+            "MIN(start_time) AS first_point, MAX(end_time) AS last_point FROM gps_trace_chunk ";
+    private static final String LAST_SEALED = "SELECT MAX(end_time) FROM gps_trace_chunk WHERE ride_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkPoints;
+    private final Duration chunkAge;
+
+    private final Map<Long, TraceBuffer> buffers = new ConcurrentHashMap<>();
+
+    public TraceRecorder(JdbcTemplate jdbcTemplate,
+                         @Value("${tracking.trace.chunk-points:240}") int chunkPoints,
+                         @Value("${tracking.trace.chunk-seconds:300}") long chunkSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkPoints = Math.max(1, Math.min(chunkPoints, TraceCodec.MAX_CHUNK_POINTS));
+        this.chunkAge = Duration.ofSeconds(chunkSeconds);
+    }
+
+    /**
+     * @return false if {@code time} is not after the ride's last recorded point, which is then dropped
+     */
+    public boolean record(Long rideId, double latitude, double longitude, Instant time) {
+        return !recordAll(rideId, List.of(new TracePoint(latitude, longitude, time.toEpochMilli()))).isEmpty();
+    }
+
+    /**
+     * Appends {@code points} in order under one lock. A point not after the ride's last recorded one is an
+     * out of order or duplicate upload and is dropped.
+     *
+     * @return the points appended
+     */
+    public List<TracePoint> recordAll(Long rideId, List<TracePoint> points) {
+        while (true) {
+            TraceBuffer buffer = buffers.get(rideId);
+            if (buffer == null) {
+                // Queried outside the map so a slow lookup doesn't block other rides
+                TraceBuffer fresh = new TraceBuffer(lastSealedMillis(rideId));
+                TraceBuffer raced = buffers.putIfAbsent(rideId, fresh);
+                buffer = raced != null ? raced : fresh;
+            }
+            synchronized (buffer) {
+                // A buffer retired by a concurrent seal is no longer in the map; retry with a fresh one
+                if (!buffer.retired) {
+                    List<TracePoint> accepted = new ArrayList<>(points.size());
+                    for (TracePoint point : points) {
+                        if (buffer.append(point.epochMillis, TraceCodec.quantize(point.latitude),
+                                TraceCodec.quantize(point.longitude))) {
+                            accepted.add(point);
+                        }
+                    }
+                    return accepted;
+                }
+            }
+        }
+    }
+
+    /**
+     * Unsealed points of {@code rideId}, oldest first, so replays of a ride in progress reach the last ping.
+     */
+    public List<TracePoint> pending(Long rideId) {
+        TraceBuffer buffer = buffers.get(rideId);
+        if (buffer == null) {
+            return List.of();
+        }
+        synchronized (buffer) {
+            List<TracePoint> points = new ArrayList<>(buffer.size);
+            for (int i = 0; i < buffer.size; i++) {
+                points.add(new TracePoint(buffer.latitudes[i] / TraceCodec.SCALE,
+                        buffer.longitudes[i] / TraceCodec.SCALE, buffer.times[i]));
+            }
+            return points;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${tracking.live.flush-millis:5000}")
+    public void sealDue() {
+        long ageCutoff = Instant.now().minus(chunkAge).toEpochMilli();
+        List<SealedChunk> chunks = new ArrayList<>();
+        List<TraceBuffer> drained = new ArrayList<>();
+        buffers.forEach((rideId, buffer) -> {
+            synchronized (buffer) {
+                if (buffer.size >= chunkPoints || (buffer.size > 0 && buffer.times[0] <= ageCutoff)) {
+                    drain(rideId, buffer, chunks);
+                    drained.add(buffer);
+                } else if (buffer.size == 0) {
+                    // Sealed earlier and silent since
+                    retire(rideId, buffer);
+                }
+            }
+        });
+        write(chunks);
+        written(drained);
+    }
+
+    /**
+     * Seals whatever {@code rideId} has buffered, for when tracking stops.
+     */
+    public void seal(Long rideId) {
+        TraceBuffer buffer = buffers.get(rideId);
+        if (buffer == null) {
+            return;
+        }
+        List<SealedChunk> chunks = new ArrayList<>();
+        synchronized (buffer) {
+            drain(rideId, buffer, chunks);
+        }
+        write(chunks);
+        // Left for sealDue to retire, once nothing it drained is still being written
+        written(List.of(buffer));
+    }
+
+    @PreDestroy
+    public void sealAll() {
+        List<SealedChunk> chunks = new ArrayList<>();
+        buffers.forEach((rideId, buffer) -> {
+            synchronized (buffer) {
+                drain(rideId, buffer, chunks);
+            }
+        });
+        write(chunks);
+        log.info("Sealed {} breadcrumb chunks on shutdown", chunks.size());
+    }
+
+    public void clear() {
+        buffers.clear();
+    }
+
+    /**
+     * Storage used by sealed breadcrumbs, of one ride or of every ride when {@code rideId} is null.
+     */
+    public TraceStorageStatsResponse stats(Long rideId) {
+        long[] totals = new long[4];
+        double[] hours = {0};
+        RowCallbackHandler perRide = rs -> {
+            totals[0]++;
+            totals[1] += rs.getLong("chunks");
+            totals[2] += rs.getLong("points");
+            totals[3] += rs.getLong("bytes");
+            Instant first = rs.getObject("first_point", OffsetDateTime.class).toInstant();
+            Instant last = rs.getObject("last_point", OffsetDateTime.class).toInstant();
+            hours[0] += Duration.between(first, last).toMillis() / 3_600_000.0;
+        };
+        if (rideId != null) {
+            jdbcTemplate.query(STATS + "WHERE ride_id = ? GROUP BY ride_id", perRide, rideId);
+        } else {
+            jdbcTemplate.query(STATS + "GROUP BY ride_id", perRide);
+        }
+        return TraceStorageStatsResponse.builder()
+                .rides(totals[0])
+                .chunks(totals[1])
+                .points(totals[2])
+                .encodedBytes(totals[3])
+                .trackedHours(hours[0])
+                .bytesPerPoint(totals[2] > 0 ? (double) totals[3] / totals[2] : null)
+                // Rides with a single point have no duration and can't give a rate
+                .bytesPerRideHour(hours[0] > 0 ? totals[3] / hours[0] : null)
+                .build();
+    }
+
+    private void drain(Long rideId, TraceBuffer buffer, List<SealedChunk> chunks) {
+        for (int from = 0; from < buffer.size; from += chunkPoints) {
+            int count = Math.min(chunkPoints, buffer.size - from);
+            chunks.add(new SealedChunk(rideId,
+                    buffer.times[from],
+                    buffer.times[from + count - 1],
+                    count,
+                    TraceCodec.encode(buffer.times, buffer.latitudes, buffer.longitudes, from, count)));
+        }
+        buffer.size = 0;
+        buffer.unwritten++;
+    }
+
+    private void written(List<TraceBuffer> drained) {
+        for (TraceBuffer buffer : drained) {
+            synchronized (buffer) {
+                buffer.unwritten--;
+            }
+        }
+    }
+
+    private void retire(Long rideId, TraceBuffer buffer) {
+        // A replacement buffer reads its starting point from the chunks, so they must be written first
+        if (buffer.size == 0 && buffer.unwritten == 0) {
+            buffer.retired = true;
+            buffers.remove(rideId, buffer);
+        }
+    }
+
+    private long lastSealedMillis(Long rideId) {
+        OffsetDateTime last = jdbcTemplate.queryForObject(LAST_SEALED, OffsetDateTime.class, rideId);
+        return last != null ? last.toInstant().toEpochMilli() : Long.MIN_VALUE;
+    }
+
+    private void write(List<SealedChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        try {
+            insert(chunks);
+        } catch (DataAccessException e) {
+            // A ride deleted meanwhile fails its insert; keep the other rides' chunks
+            log.warn("Batch of {} breadcrumb chunks failed, writing individually", chunks.size(), e);
+            for (SealedChunk chunk : chunks) {
+                try {
+                    insert(List.of(chunk));
+                } catch (DataAccessException rowFailure) {
+                    log.warn("Dropping {} breadcrumbs of ride {}", chunk.pointCount, chunk.rideId, rowFailure);
+                }
+            }
+        }
+    }
+
+    private void insert(List<SealedChunk> chunks) {
+        jdbcTemplate.batchUpdate(INSERT_CHUNK, chunks, chunks.size(), (ps, chunk) -> {
+            ps.setLong(1, chunk.rideId);
+            ps.setObject(2, toTimestamp(chunk.startMillis));
+            ps.setObject(3, toTimestamp(chunk.endMillis));
+            ps.setInt(4, chunk.pointCount);
+            ps.setBytes(5, chunk.data);
+        });
+    }
+
+    private static OffsetDateTime toTimestamp(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+
+    public static final class TracePoint {
+        private final double latitude;
+        private final double longitude;
+        private final long epochMillis;
+
+        public TracePoint(double latitude, double longitude, long epochMillis) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.epochMillis = epochMillis;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public long getEpochMillis() {
+            return epochMillis;
+        }
+    }
+
+    private static final class SealedChunk {
+        private final Long rideId;
+        private final long startMillis;
+        private final long endMillis;
+        private final int pointCount;
+        private final byte[] data;
+
+        private SealedChunk(Long rideId, long startMillis, long endMillis, int pointCount, byte[] data) {
+            this.rideId = rideId;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.pointCount = pointCount;
+            this.data = data;
+        }
+    }
+
+    private static final class TraceBuffer {
+        private long[] times = new long[16];
+        private int[] latitudes = new int[16];
+        private int[] longitudes = new int[16];
+        private int size;
+        private boolean retired;
+        // Drains whose chunks are not written yet
+        private int unwritten;
+        // Kept across seals so a late upload can't append behind a sealed chunk
+        private long lastMillis;
+
+        private TraceBuffer(long lastMillis) {
+            this.lastMillis = lastMillis;
+        }
+
+        private boolean append(long time, int latitude, int longitude) {
+            if (time <= lastMillis) {
+                return false;
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+            }
+            times[size] = time;
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            size++;
+            lastMillis = time;
+            return true;
+        }
+    }
+}
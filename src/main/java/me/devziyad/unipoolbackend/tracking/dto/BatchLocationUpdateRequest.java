@@ -0,0 +1,35 @@
+package me.devziyad.unipoolbackend.tracking.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+public class BatchLocationUpdateRequest {
+    @NotEmpty(message = "At least one point is required")
+    @Size(max = 1000, message = "Cannot upload more than 1000 points at once")
+    private List<@Valid Point> points;
+
+    @Data
+    public static class Point {
+        @NotNull(message = "Latitude is required")
+        @DecimalMin(value = "-90.0", message = "Latitude must be between -90 and 90")
+        @DecimalMax(value = "90.0", message = "Latitude must be between -90 and 90")
+        private Double latitude;
+
+        @NotNull(message = "Longitude is required")
+        @DecimalMin(value = "-180.0", message = "Longitude must be between -180 and 180")
+        @DecimalMax(value = "180.0", message = "Longitude must be between -180 and 180")
+        private Double longitude;
+
+        @NotNull(message = "Timestamp is required")
+        private Instant timestamp;
+    }
+}
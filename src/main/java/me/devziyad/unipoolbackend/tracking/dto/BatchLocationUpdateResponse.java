@@ -0,0 +1,18 @@
+package me.devziyad.unipoolbackend.tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLocationUpdateResponse {
+    private Integer accepted;
+    // Out of order, duplicate or future points
+    private Integer dropped;
+    // The ride's live position after the batch; unchanged if a newer ping already arrived
+    private GpsLocationResponse current;
+}
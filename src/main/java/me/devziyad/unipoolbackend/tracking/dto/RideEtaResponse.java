@@ -0,0 +1,42 @@
+package me.devziyad.unipoolbackend.tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RideEtaResponse {
+    private Long rideId;
+    private Double latitude;
+    private Double longitude;
+    private Instant lastUpdate;
+    // Distance from the driver to the nearest point of the route
+    private Double distanceFromRouteKm;
+    private Boolean offRoute;
+    private Double remainingKm;
+    private Integer minutesToDestination;
+    private Instant destinationEta;
+    private List<PickupEta> pickups;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PickupEta {
+        private Long bookingId;
+        private Long riderId;
+        private String label;
+        private Double remainingKm;
+        private Integer minutes;
+        private Instant eta;
+        // The driver is already past this pickup along the route
+        private Boolean passed;
+    }
+}
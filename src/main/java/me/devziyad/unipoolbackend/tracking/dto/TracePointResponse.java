@@ -0,0 +1,18 @@
+package me.devziyad.unipoolbackend.tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TracePointResponse {
+    private Double latitude;
+    private Double longitude;
+    private Instant timestamp;
+}
@@ -0,0 +1,20 @@
+package me.devziyad.unipoolbackend.tracking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraceStorageStatsResponse {
+    private Long rides;
+    private Long chunks;
+    private Long points;
+    private Long encodedBytes;
+    private Double trackedHours;
+    private Double bytesPerPoint;
+    private Double bytesPerRideHour;
+}
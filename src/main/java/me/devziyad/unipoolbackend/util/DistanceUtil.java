@@ -2,7 +2,7 @@ package me.devziyad.unipoolbackend.util;
 
 public class DistanceUtil {
 
-    private static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double EARTH_RADIUS_KM = 6371.0;
 
     /**
      * Calculate distance between two coordinates using Haversine formula
@@ -27,4 +27,61 @@ public class DistanceUtil {
     public static boolean isWithinRadius(double lat1, double lon1, double lat2, double lon2, double radiusKm) {
         return haversineDistance(lat1, lon1, lat2, lon2) <= radiusKm;
     }
+
+    /**
+     * Haversine distance from (lat, lon) to every point of the arrays, written to {@code out}.
+     * The origin's trigonometry is computed once for the whole batch.
+     */
+    public static void haversineDistances(double lat, double lon, double[] lats, double[] lons, double[] out) {
+        double latRad = Math.toRadians(lat);
+        double cosLat = Math.cos(latRad);
+        for (int i = 0; i < lats.length; i++) {
+            out[i] = haversineFrom(latRad, cosLat, lon, lats[i], lons[i]);
+        }
+    }
+
+    /**
+     * Like {@link #haversineDistances}, but only for points within radius of (lat, lon); every other
+     * entry of {@code out} is set to {@link Double#POSITIVE_INFINITY}. Points outside the radius'
+     * bounding box are rejected with plain comparisons; only the rest pay for the exact distance.
+     *
+     * @return the number of points within radius
+     */
+    public static int distancesWithinRadius(double lat, double lon, double[] lats, double[] lons, double radiusKm,
+                                            double[] out) {
+        double latRad = Math.toRadians(lat);
+        double cosLat = Math.cos(latRad);
+        double latSpan = Math.toDegrees(radiusKm / EARTH_RADIUS_KM);
+        // Near the poles the longitude span covers everything, so only the latitude test applies
+        double lonSpan = Math.abs(lat) + latSpan >= 90.0 ? 360.0 : latSpan / Math.cos(Math.toRadians(Math.abs(lat) + latSpan));
+
+        int count = 0;
+        for (int i = 0; i < lats.length; i++) {
+            out[i] = Double.POSITIVE_INFINITY;
+            if (Math.abs(lats[i] - lat) > latSpan) {
+                continue;
+            }
+            double dLon = Math.abs(lons[i] - lon);
+            if (dLon > 180.0) {
+                dLon = 360.0 - dLon;
+            }
+            if (dLon > lonSpan) {
+                continue;
+            }
+            double distance = haversineFrom(latRad, cosLat, lon, lats[i], lons[i]);
+            if (distance <= radiusKm) {
+                out[i] = distance;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static double haversineFrom(double latRad, double cosLat, double lon, double lat2, double lon2) {
+        double lat2Rad = Math.toRadians(lat2);
+        double sinDLat = Math.sin((lat2Rad - latRad) / 2);
+        double sinDLon = Math.sin(Math.toRadians(lon2 - lon) / 2);
+        double a = sinDLat * sinDLat + cosLat * Math.cos(lat2Rad) * sinDLon * sinDLon;
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
 }
\ No newline at end of file
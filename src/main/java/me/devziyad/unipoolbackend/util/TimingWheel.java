@@ -0,0 +1,96 @@
+package me.devziyad.unipoolbackend.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: items are hashed by deadline tick into a fixed ring of buckets, so scheduling is O(1)
+ * and each {@link #advance} only visits the buckets for the ticks that passed, instead of scanning every
+ * pending item. Items whose deadline is more than one revolution away share a bucket with nearer ones and are
+ * skipped until their tick comes round.
+ * <p>
+ * Items fire at or after their deadline, never before, rounded up to the tick. There is no cancellation;
+ * callers are expected to ignore items that no longer apply when they fire.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final ArrayDeque<Entry<T>>[] buckets;
+    // First tick not yet processed
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+    }
+
+    /**
+     * Schedules {@code item} to fire once {@code deadlineMillis} has passed. A deadline already in the
+     * past fires on the next {@link #advance}.
+     */
+    public synchronized void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick);
+        buckets[(int) Math.floorMod(tick, (long) buckets.length)].add(new Entry<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Moves the wheel to {@code nowMillis}.
+     *
+     * @return the items whose deadline has passed, in no particular order
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<T> expired = new ArrayList<>();
+        if (targetTick < currentTick) {
+            return expired;
+        }
+        // After a pause longer than one revolution every bucket is due, but each only needs one visit
+        long ticks = Math.min(targetTick - currentTick + 1, buckets.length);
+        for (long t = currentTick; t < currentTick + ticks; t++) {
+            Iterator<Entry<T>> it = buckets[(int) Math.floorMod(t, (long) buckets.length)].iterator();
+            while (it.hasNext()) {
+                Entry<T> entry = it.next();
+                if (entry.tick <= targetTick) {
+                    expired.add(entry.item);
+                    it.remove();
+                }
+            }
+        }
+        size -= expired.size();
+        currentTick = targetTick + 1;
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        for (ArrayDeque<Entry<T>> bucket : buckets) {
+            bucket.clear();
+        }
+        size = 0;
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long tick;
+
+        private Entry(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
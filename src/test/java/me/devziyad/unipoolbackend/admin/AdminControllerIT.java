@@ -1,7 +1,13 @@
 package me.devziyad.unipoolbackend.admin;
 
+import me.devziyad.unipoolbackend.booking.Booking;
+import me.devziyad.unipoolbackend.booking.BookingRepository;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.common.RideStatus;
 import me.devziyad.unipoolbackend.common.Role;
 import me.devziyad.unipoolbackend.location.dto.LocationResponse;
+import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideRepository;
 import me.devziyad.unipoolbackend.ride.dto.RideResponse;
 import me.devziyad.unipoolbackend.security.JwtService;
 import me.devziyad.unipoolbackend.user.UserRepository;
@@ -16,6 +22,12 @@ import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.client.RestTestClient;
 
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
 @AutoConfigureRestTestClient
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @org.springframework.test.context.ActiveProfiles("test")
@@ -33,6 +45,12 @@ public class AdminControllerIT {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
     private String adminToken;
     private String regularUserToken;
     private Long rideId;
@@ -227,6 +245,35 @@ public class AdminControllerIT {
                 .jsonPath("$").isArray();
     }
 
+    @Test
+    void shouldSettleBookingsWhenForceCompletingRide() {
+        TestUtils.verifyUniversityIdByEmailDirectly(userRepository, "user@example.com");
+        Booking booking = bookingRepository.findById(TestUtils.createBooking(restClient, regularUserToken, rideId, 1))
+                .orElseThrow();
+        booking.setStatus(BookingStatus.HELD);
+        booking.setHoldExpiresAt(Instant.now().plus(Duration.ofMinutes(10)));
+        bookingRepository.save(booking);
+        Ride ride = rideRepository.findById(rideId).orElseThrow();
+        ride.setAvailableSeats(ride.getTotalSeats() - 1);
+        rideRepository.save(ride);
+
+        restClient
+                .put()
+                .uri("/api/admin/rides/" + rideId + "/complete")
+                .header("Authorization", "Bearer " + adminToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // The hold is dropped like on a driver's completion, and its seat goes back to the ride
+        Booking settled = bookingRepository.findById(booking.getId()).orElseThrow();
+        assertEquals(BookingStatus.CANCELLED, settled.getStatus());
+        assertNull(settled.getHoldExpiresAt());
+        Ride completed = rideRepository.findById(rideId).orElseThrow();
+        assertEquals(RideStatus.COMPLETED, completed.getStatus());
+        assertEquals(completed.getTotalSeats(), completed.getAvailableSeats());
+    }
+
     @Test
     void shouldRejectAdminEndpointsWithoutAuth() {
         // Spring Security returns 403 Forbidden when no authentication token is provided
@@ -0,0 +1,198 @@
+package me.devziyad.unipoolbackend.booking;
+
+import me.devziyad.unipoolbackend.booking.dto.CreateBookingRequest;
+import me.devziyad.unipoolbackend.ride.dto.RideResponse;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.client.EntityExchangeResult;
+import org.springframework.test.web.servlet.client.RestTestClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fires booking requests at {@code POST /api/bookings} from a fixed pool of threads and reports
+ * throughput, latency percentiles and how each request ended. Responses are classified as booked (201),
+ * rejected by a business rule (400), lock timeout (409, see GlobalExceptionHandler) or error (anything else).
+ */
+public class BookingContentionHarness {
+
+    private final RestTestClient restClient;
+    private final int threads;
+
+    public BookingContentionHarness(RestTestClient restClient, int threads) {
+        this.restClient = restClient;
+        this.threads = threads;
+    }
+
+    public static final class Attempt {
+        private final String riderToken;
+        private final CreateBookingRequest request;
+
+        public Attempt(String riderToken, CreateBookingRequest request) {
+            this.riderToken = riderToken;
+            this.request = request;
+        }
+    }
+
+    public static final class Report {
+        private final int threads;
+        private final int booked;
+        private final int rejected;
+        private final int lockTimeouts;
+        private final int errors;
+        private final long elapsedNanos;
+        private final long[] sortedLatenciesNanos;
+
+        private Report(int threads, int booked, int rejected, int lockTimeouts, int errors,
+                       long elapsedNanos, long[] latenciesNanos) {
+            this.threads = threads;
+            this.booked = booked;
+            this.rejected = rejected;
+            this.lockTimeouts = lockTimeouts;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.sortedLatenciesNanos = latenciesNanos.clone();
+            Arrays.sort(this.sortedLatenciesNanos);
+        }
+
+        public int getBooked() {
+            return booked;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        public int getLockTimeouts() {
+            return lockTimeouts;
+        }
+
+        public int getErrors() {
+            return errors;
+        }
+
+        public int getAttempts() {
+            return sortedLatenciesNanos.length;
+        }
+
+        public double bookingsPerSecond() {
+            return booked / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        /**
+         * Nearest-rank percentile of request latency, in milliseconds.
+         */
+        public double latencyMillis(double percentile) {
+            if (sortedLatenciesNanos.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sortedLatenciesNanos.length);
+            return sortedLatenciesNanos[Math.max(0, rank - 1)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d threads, %d attempts: %d booked, %d rejected, %d lock timeouts, %d errors; "
+                            + "%.1f bookings/s, p50 %.1f ms, p99 %.1f ms",
+                    threads, getAttempts(), booked, rejected, lockTimeouts, errors,
+                    bookingsPerSecond(), latencyMillis(50), latencyMillis(99));
+        }
+    }
+
+    /**
+     * Booking request for {@code seats} seats from the ride's own pickup to its destination,
+     * with the pickup window set to the ride's departure window.
+     */
+    public static CreateBookingRequest bookingRequest(RideResponse ride, int seats) {
+        CreateBookingRequest request = new CreateBookingRequest();
+        request.setRideId(ride.getRideId());
+        request.setSeats(seats);
+        request.setPickupLocationId(ride.getPickupLocationId());
+        request.setDropoffLocationId(ride.getDestinationLocationId());
+        request.setPickupTimeStart(ride.getDepartureTimeStart());
+        request.setPickupTimeEnd(ride.getDepartureTimeEnd());
+        return request;
+    }
+
+    /**
+     * Runs every attempt once. All threads start together; each takes the next attempt until none are left.
+     */
+    public Report run(List<Attempt> attempts) {
+        AtomicInteger next = new AtomicInteger();
+        AtomicLongArray latencies = new AtomicLongArray(attempts.size());
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger lockTimeouts = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int index = next.getAndIncrement(); index < attempts.size(); index = next.getAndIncrement()) {
+                        Attempt attempt = attempts.get(index);
+                        long startedAt = System.nanoTime();
+                        int status = post(attempt);
+                        latencies.set(index, System.nanoTime() - startedAt);
+                        if (status == 201) {
+                            booked.incrementAndGet();
+                        } else if (status == 400) {
+                            rejected.incrementAndGet();
+                        } else if (status == 409) {
+                            lockTimeouts.incrementAndGet();
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.MINUTES);
+            }
+            long elapsed = System.nanoTime() - startedAt;
+
+            long[] latencyValues = new long[attempts.size()];
+            for (int i = 0; i < latencyValues.length; i++) {
+                latencyValues[i] = latencies.get(i);
+            }
+            return new Report(threads, booked.get(), rejected.get(), lockTimeouts.get(), errors.get(),
+                    elapsed, latencyValues);
+        } catch (Exception e) {
+            throw new RuntimeException("Booking contention run failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int post(Attempt attempt) {
+        try {
+            EntityExchangeResult<byte[]> result = restClient
+                    .post()
+                    .uri("/api/bookings")
+                    .header("Authorization", "Bearer " + attempt.riderToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(attempt.request)
+                    .exchange()
+                    .expectBody()
+                    .returnResult();
+            return result.getStatus().value();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package me.devziyad.unipoolbackend.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.common.Role;
+import me.devziyad.unipoolbackend.location.dto.LocationResponse;
+import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.ride.dto.RideResponse;
+import me.devziyad.unipoolbackend.user.UserRepository;
+import me.devziyad.unipoolbackend.user.dto.UpdateSettingsRequest;
+import me.devziyad.unipoolbackend.util.TestUtils;
+import me.devziyad.unipoolbackend.vehicle.dto.VehicleResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureRestTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.client.RestTestClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent {@code POST /api/bookings} against one ride and against several rides, through
+ * {@link BookingContentionHarness}. The driver auto-accepts, so every successful booking takes seats.
+ * Thread count can be raised with {@code -Dbooking.contention.threads=N}.
+ */
+@AutoConfigureRestTestClient
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@org.springframework.test.context.ActiveProfiles("test")
+@Slf4j
+public class BookingContentionIT {
+
+    private static final int RIDERS = 24;
+    private static final int RIDES = 6;
+    // TestUtils creates rides with 4 seats
+    private static final int SEATS_PER_RIDE = 4;
+
+    @Autowired
+    private RestTestClient restClient;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private final List<String> riderTokens = new ArrayList<>();
+    private final List<RideResponse> rides = new ArrayList<>();
+    private BookingContentionHarness harness;
+
+    @BeforeEach
+    void setUp() {
+        harness = new BookingContentionHarness(restClient, Integer.getInteger("booking.contention.threads", 8));
+
+        for (int i = 0; i < RIDERS; i++) {
+            TestUtils.RegistrationResult riderResult = TestUtils.registerAndGetResult(
+                    restClient,
+                    "contention-rider" + i + "@example.com",
+                    "rider123",
+                    "Contention Rider " + i,
+                    Role.RIDER
+            );
+            TestUtils.verifyUniversityIdByEmailDirectly(userRepository, riderResult.getEmail());
+            riderTokens.add(riderResult.getToken());
+        }
+
+        TestUtils.RegistrationResult driverResult = TestUtils.registerAndGetResult(
+                restClient,
+                "contention-driver@example.com",
+                "driver123",
+                "Contention Driver",
+                Role.DRIVER
+        );
+        String driverToken = driverResult.getToken();
+        TestUtils.verifyDriverByEmailDirectly(userRepository, driverResult.getEmail());
+
+        UpdateSettingsRequest settings = new UpdateSettingsRequest();
+        settings.setAutoAcceptBookings(true);
+        restClient
+                .put()
+                .uri("/api/users/me/settings")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(settings)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        VehicleResponse vehicle = TestUtils.createVehicle(restClient, driverToken);
+        LocationResponse pickupLocation = TestUtils.createLocation(restClient, driverToken, "Pickup", 40.7128, -74.0060);
+        LocationResponse destinationLocation = TestUtils.createLocation(restClient, driverToken, "Destination", 40.7589, -73.9851);
+
+        // Two hours apart so the driver's rides don't overlap
+        for (int i = 0; i < RIDES; i++) {
+            rides.add(TestUtils.createRide(restClient, driverToken, vehicle.getId(),
+                    pickupLocation.getId(), destinationLocation.getId(), 2 + 2L * i));
+        }
+    }
+
+    @Test
+    void singleRideIsNeverOverbooked() {
+        RideResponse ride = rides.get(0);
+        List<BookingContentionHarness.Attempt> attempts = new ArrayList<>();
+        for (String riderToken : riderTokens) {
+            attempts.add(new BookingContentionHarness.Attempt(riderToken, BookingContentionHarness.bookingRequest(ride, 1)));
+        }
+
+        BookingContentionHarness.Report report = harness.run(attempts);
+        log.info("Single ride: {}", report);
+
+        assertEquals(0, report.getErrors());
+        assertEquals(SEATS_PER_RIDE, report.getBooked());
+        assertEquals(RIDERS, report.getBooked() + report.getRejected() + report.getLockTimeouts());
+        assertSeatsMatchConfirmedBookings(ride.getRideId());
+    }
+
+    @Test
+    void manyRidesAreNeverOverbooked() {
+        List<BookingContentionHarness.Attempt> attempts = new ArrayList<>();
+        for (RideResponse ride : rides) {
+            for (String riderToken : riderTokens) {
+                attempts.add(new BookingContentionHarness.Attempt(riderToken, BookingContentionHarness.bookingRequest(ride, 1)));
+            }
+        }
+        // Interleave rides so threads contend on several rows at once
+        Collections.shuffle(attempts, new Random(42));
+
+        BookingContentionHarness.Report report = harness.run(attempts);
+        log.info("Many rides: {}", report);
+
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getBooked() <= RIDES * SEATS_PER_RIDE);
+        for (RideResponse ride : rides) {
+            assertSeatsMatchConfirmedBookings(ride.getRideId());
+        }
+    }
+
+    private void assertSeatsMatchConfirmedBookings(Long rideId) {
+        Ride ride = rideRepository.findById(rideId).orElseThrow();
+        int confirmedSeats = bookingRepository.findByRideId(rideId).stream()
+                .filter(b -> b.getStatus() == BookingStatus.CONFIRMED)
+                .mapToInt(Booking::getSeatsBooked)
+                .sum();
+        assertTrue(ride.getAvailableSeats() >= 0, "availableSeats went negative for ride " + rideId);
+        assertEquals(ride.getTotalSeats() - confirmedSeats, ride.getAvailableSeats());
+    }
+}
@@ -1,8 +1,13 @@
 package me.devziyad.unipoolbackend.booking;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import me.devziyad.unipoolbackend.booking.dto.BookingCreatedResponse;
+import me.devziyad.unipoolbackend.booking.dto.BulkBookingDecisionRequest;
 import me.devziyad.unipoolbackend.booking.dto.CreateBookingRequest;
+import me.devziyad.unipoolbackend.common.BookingStatus;
 import me.devziyad.unipoolbackend.common.Role;
 import me.devziyad.unipoolbackend.location.dto.LocationResponse;
+import me.devziyad.unipoolbackend.notification.NotificationService;
 import me.devziyad.unipoolbackend.ride.dto.RideResponse;
 import me.devziyad.unipoolbackend.user.UserRepository;
 import me.devziyad.unipoolbackend.util.TestUtils;
@@ -15,6 +20,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.client.RestTestClient;
 
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 @AutoConfigureRestTestClient
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @org.springframework.test.context.ActiveProfiles("test")
@@ -26,6 +36,24 @@ public class BookingControllerIT {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private me.devziyad.unipoolbackend.ride.RideService rideService;
+
+    @Autowired
+    private me.devziyad.unipoolbackend.idempotency.IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private org.springframework.jdbc.core.JdbcTemplate jdbcTemplate;
+
     private String riderToken;
     private String driverToken;
     private Long rideId;
@@ -247,5 +275,459 @@ public class BookingControllerIT {
                 .expectStatus()
                 .isBadRequest();
     }
-}
 
+    @Test
+    void shouldWaitlistWhenFullAndPromoteOnCancellation() {
+        // Fill the ride: book all 4 seats and have the driver accept
+        Long bookingId = TestUtils.createBooking(restClient, riderToken, rideId, 4);
+        restClient
+                .post()
+                .uri("/api/bookings/" + bookingId + "/accept")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        TestUtils.RegistrationResult waitingResult = TestUtils.registerAndGetResult(
+                restClient,
+                "waiting@example.com",
+                "rider123",
+                "Waiting Rider",
+                Role.RIDER
+        );
+        TestUtils.verifyUniversityIdByEmailDirectly(userRepository, waitingResult.getEmail());
+        String waitingToken = waitingResult.getToken();
+
+        byte[] rideResponseBytes = restClient
+                .get()
+                .uri("/api/rides/" + rideId)
+                .header("Authorization", "Bearer " + waitingToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+        RideResponse ride;
+        try {
+            ride = TestUtils.getObjectMapper().readValue(new String(rideResponseBytes), RideResponse.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse ride response", e);
+        }
+
+        CreateBookingRequest request = BookingContentionHarness.bookingRequest(ride, 1);
+
+        // Without joinWaitlist a full ride is still rejected
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + waitingToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        request.setJoinWaitlist(true);
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + waitingToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        restClient
+                .get()
+                .uri("/api/bookings/me")
+                .header("Authorization", "Bearer " + waitingToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$[0].status").isEqualTo("WAITLISTED");
+
+        // Cancelling the confirmed booking frees seats; the driver doesn't auto-accept, so the promoted booking is pending
+        restClient
+                .post()
+                .uri("/api/bookings/" + bookingId + "/cancel")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        restClient
+                .get()
+                .uri("/api/bookings/me")
+                .header("Authorization", "Bearer " + waitingToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$[0].status").isEqualTo("PENDING");
+    }
+
+    @Test
+    void shouldDecideBookingsInBulk() {
+        Long firstBookingId = TestUtils.createBooking(restClient, riderToken, rideId, 3);
+
+        TestUtils.RegistrationResult secondResult = TestUtils.registerAndGetResult(
+                restClient,
+                "second-rider@example.com",
+                "rider123",
+                "Second Rider",
+                Role.RIDER
+        );
+        TestUtils.verifyUniversityIdByEmailDirectly(userRepository, secondResult.getEmail());
+        Long secondBookingId = TestUtils.createBooking(restClient, secondResult.getToken(), rideId, 2);
+
+        BulkBookingDecisionRequest.Decision confirmFirst = new BulkBookingDecisionRequest.Decision();
+        confirmFirst.setBookingId(firstBookingId);
+        confirmFirst.setStatus(BookingStatus.CONFIRMED);
+        // Only one seat is left after the first confirmation
+        BulkBookingDecisionRequest.Decision confirmSecond = new BulkBookingDecisionRequest.Decision();
+        confirmSecond.setBookingId(secondBookingId);
+        confirmSecond.setStatus(BookingStatus.CONFIRMED);
+        BulkBookingDecisionRequest request = new BulkBookingDecisionRequest();
+        request.setDecisions(java.util.List.of(confirmFirst, confirmSecond));
+
+        restClient
+                .post()
+                .uri("/api/bookings/ride/" + rideId + "/decisions")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.availableSeats").isEqualTo(1)
+                .jsonPath("$.confirmed").isEqualTo(1)
+                .jsonPath("$.rejected").isEqualTo(1)
+                .jsonPath("$.results[0].applied").isEqualTo(true)
+                .jsonPath("$.results[1].applied").isEqualTo(false)
+                .jsonPath("$.results[1].status").isEqualTo("PENDING");
+
+        // Riders can't decide bookings
+        restClient
+                .post()
+                .uri("/api/bookings/ride/" + rideId + "/decisions")
+                .header("Authorization", "Bearer " + riderToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+    }
+
+    @Test
+    void shouldCreateBookingInLeanModeWithRideETag() {
+        byte[] rideResponseBytes = restClient
+                .get()
+                .uri("/api/rides/" + rideId)
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .exists("ETag")
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+        RideResponse ride;
+        try {
+            ride = TestUtils.getObjectMapper().readValue(new String(rideResponseBytes), RideResponse.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse ride response", e);
+        }
+
+        String eTag = restClient
+                .post()
+                .uri("/api/bookings?lean=true")
+                .header("Authorization", "Bearer " + riderToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(BookingContentionHarness.bookingRequest(ride, 2))
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody()
+                .jsonPath("$.booking.rideId").isEqualTo(rideId.intValue())
+                .jsonPath("$.booking.seatsBooked").isEqualTo(2)
+                .jsonPath("$.availableSeats").isEqualTo(ride.getAvailableSeats())
+                .jsonPath("$.bookings").doesNotExist()
+                .returnResult()
+                .getResponseHeaders()
+                .getETag();
+
+        // The booking changed the ride, so the ETag from before it is stale and the new one is current
+        restClient
+                .get()
+                .uri("/api/rides/" + rideId)
+                .header("Authorization", "Bearer " + riderToken)
+                .header("If-None-Match", "\"" + ride.getVersion() + "\"")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        restClient
+                .get()
+                .uri("/api/rides/" + rideId)
+                .header("Authorization", "Bearer " + riderToken)
+                .header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+    }
+
+    @Test
+    void shouldReplayBookingWithSameIdempotencyKey() {
+        byte[] rideResponseBytes = restClient
+                .get()
+                .uri("/api/rides/" + rideId)
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+        RideResponse ride;
+        try {
+            ride = TestUtils.getObjectMapper().readValue(new String(rideResponseBytes), RideResponse.class);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to parse ride response", e);
+        }
+        CreateBookingRequest request = BookingContentionHarness.bookingRequest(ride, 2);
+        String idempotencyKey = java.util.UUID.randomUUID().toString();
+
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + riderToken)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody()
+                .jsonPath("$.availableSeats").isEqualTo(ride.getAvailableSeats());
+
+        // The retry gets the first response back instead of a duplicate-booking error
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + riderToken)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectHeader()
+                .valueEquals("Idempotent-Replayed", "true")
+                .expectBody()
+                .jsonPath("$.rideId").isEqualTo(rideId.intValue());
+
+        restClient
+                .get()
+                .uri("/api/bookings/me")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1);
+
+        request.setSeats(1);
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + riderToken)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
+    @Test
+    void shouldNotRerunIdempotentRequestWhoseResponseWasNeverRecorded() {
+        RideResponse ride = rideService.getRideById(rideId);
+        CreateBookingRequest request = BookingContentionHarness.bookingRequest(ride, 1);
+        String idempotencyKey = java.util.UUID.randomUUID().toString();
+
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + riderToken)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        // As if the process stopped after the booking committed but before its response was stored
+        jdbcTemplate.update("UPDATE idempotency_records SET status_code = NULL, response_body = NULL, created_at = ? "
+                        + "WHERE idempotency_key = ?",
+                java.sql.Timestamp.from(java.time.Instant.now().minus(Duration.ofMinutes(10))), idempotencyKey);
+        idempotencyStore.clear();
+
+        restClient
+                .post()
+                .uri("/api/bookings")
+                .header("Authorization", "Bearer " + riderToken)
+                .header("Idempotency-Key", idempotencyKey)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+
+        restClient
+                .get()
+                .uri("/api/bookings/me")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1);
+    }
+
+    @Test
+    void shouldHoldSeatsAndReleaseThemOnExpiry() throws Exception {
+        byte[] rideResponseBytes = restClient
+                .get()
+                .uri("/api/rides/" + rideId)
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+        RideResponse ride = TestUtils.getObjectMapper().readValue(new String(rideResponseBytes), RideResponse.class);
+        CreateBookingRequest request = BookingContentionHarness.bookingRequest(ride, 2);
+        request.setHoldSeats(true);
+
+        // The driver confirms manually, so without the hold these seats would stay free
+        byte[] createdBytes = restClient
+                .post()
+                .uri("/api/bookings?lean=true")
+                .header("Authorization", "Bearer " + riderToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody()
+                .jsonPath("$.booking.status").isEqualTo("HELD")
+                .jsonPath("$.booking.holdExpiresAt").exists()
+                .jsonPath("$.availableSeats").isEqualTo(ride.getAvailableSeats() - 2)
+                .returnResult()
+                .getResponseBody();
+        Long bookingId = TestUtils.getObjectMapper()
+                .readValue(new String(createdBytes), BookingCreatedResponse.class)
+                .getBooking()
+                .getBookingId();
+
+        // Let the hold run out, then run the expiry the timer would trigger
+        Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        booking.setHoldExpiresAt(java.time.Instant.now().minusSeconds(1));
+        bookingRepository.save(booking);
+        assertEquals(1, bookingService.expireHolds(List.of(bookingId)));
+        assertEquals(0, bookingService.expireHolds(List.of(bookingId)));
+
+        restClient
+                .get()
+                .uri("/api/bookings/" + bookingId)
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("PENDING")
+                .jsonPath("$.holdExpiresAt").doesNotExist();
+
+        restClient
+                .get()
+                .uri("/api/rides/" + rideId + "/available-seats")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$").isEqualTo(ride.getAvailableSeats());
+    }
+
+    @Test
+    void shouldDeliverBookingNotificationsThroughOutbox() {
+        TestUtils.createBooking(restClient, riderToken, rideId, 2);
+
+        // Queued by the booking transaction; reading them delivers whatever is still queued
+        restClient
+                .get()
+                .uri("/api/notifications/me/unread-count")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(1);
+
+        restClient
+                .get()
+                .uri("/api/notifications/me")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].title").isEqualTo("Booking Pending")
+                .jsonPath("$[0].read").isEqualTo(false);
+    }
+
+    @Test
+    void shouldSendRideReminderExactlyOnce() throws Exception {
+        Long bookingId = TestUtils.createBooking(restClient, riderToken, rideId, 1);
+        restClient
+                .post()
+                .uri("/api/bookings/" + bookingId + "/accept")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // A lead time wide enough to put the ride's departure inside the reminder window
+        Duration leadTime = Duration.ofDays(30);
+        assertEquals(1, notificationService.sendRideReminders(List.of(rideId), leadTime));
+        // Fired again, e.g. scheduled by both the startup load and a ride event
+        assertEquals(0, notificationService.sendRideReminders(List.of(rideId, rideId), leadTime));
+
+        for (String token : List.of(driverToken, riderToken)) {
+            byte[] responseBytes = restClient
+                    .get()
+                    .uri("/api/notifications/me")
+                    .header("Authorization", "Bearer " + token)
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .returnResult()
+                    .getResponseBody();
+            int reminders = 0;
+            for (JsonNode notification : TestUtils.getObjectMapper().readTree(responseBytes)) {
+                if ("Ride Starting Soon".equals(notification.get("title").asText())) {
+                    reminders++;
+                }
+            }
+            assertEquals(1, reminders);
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package me.devziyad.unipoolbackend.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.common.Role;
+import me.devziyad.unipoolbackend.location.LocationRepository;
+import me.devziyad.unipoolbackend.location.dto.LocationResponse;
+import me.devziyad.unipoolbackend.ride.Ride;
+import me.devziyad.unipoolbackend.ride.RideRepository;
+import me.devziyad.unipoolbackend.ride.dto.RideResponse;
+import me.devziyad.unipoolbackend.user.UserRepository;
+import me.devziyad.unipoolbackend.util.TestUtils;
+import me.devziyad.unipoolbackend.vehicle.dto.VehicleResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureRestTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.client.RestTestClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent seat reservation against a single ride, comparing the previous lock-and-recount path
+ * ({@link RideRepository#findByIdWithLock} plus a recount of confirmed bookings) with the conditional
+ * {@link RideRepository#reserveSeats} update. Both insert a confirmed booking per reserved seat, so the
+ * recount cost grows the way it does for a popular ride. Also races cancellations and confirmations of
+ * one booking through {@link BookingService}, which must give seats back exactly once.
+ */
+@AutoConfigureRestTestClient
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@org.springframework.test.context.ActiveProfiles("test")
+@Slf4j
+public class SeatReservationIT {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private RestTestClient restClient;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private LocationRepository locationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BookingService bookingService;
+
+    private TransactionTemplate transactionTemplate;
+    private Long riderId;
+    private Long driverId;
+    private RideResponse ride;
+    private Long rideId;
+
+    @FunctionalInterface
+    private interface ReservationStrategy {
+        boolean reserveOneSeat(Long rideId);
+    }
+
+    private static final class RunResult {
+        private final int reserved;
+        private final int rejected;
+        private final int errors;
+        private final long elapsedNanos;
+
+        private RunResult(int reserved, int rejected, int errors, long elapsedNanos) {
+            this.reserved = reserved;
+            this.rejected = rejected;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        private double attemptsPerSecond() {
+            return (reserved + rejected + errors) / (elapsedNanos / 1_000_000_000.0);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        TestUtils.RegistrationResult riderResult = TestUtils.registerAndGetResult(
+                restClient, "seatrider@example.com", "rider123", "Seat Rider", Role.RIDER);
+        TestUtils.verifyUniversityIdByEmailDirectly(userRepository, riderResult.getEmail());
+        riderId = userRepository.findByEmail(riderResult.getEmail()).orElseThrow().getId();
+
+        TestUtils.RegistrationResult driverResult = TestUtils.registerAndGetResult(
+                restClient, "seatdriver@example.com", "driver123", "Seat Driver", Role.DRIVER);
+        String driverToken = driverResult.getToken();
+        TestUtils.verifyDriverByEmailDirectly(userRepository, driverResult.getEmail());
+        driverId = userRepository.findByEmail(driverResult.getEmail()).orElseThrow().getId();
+
+        VehicleResponse vehicle = TestUtils.createVehicle(restClient, driverToken);
+        LocationResponse pickupLocation = TestUtils.createLocation(restClient, driverToken, "Pickup", 40.7128, -74.0060);
+        LocationResponse destinationLocation = TestUtils.createLocation(restClient, driverToken, "Destination", 40.7589, -73.9851);
+        ride = TestUtils.createRide(restClient, driverToken, vehicle.getId(),
+                pickupLocation.getId(), destinationLocation.getId());
+        rideId = ride.getRideId();
+    }
+
+    @Test
+    void conditionalReservationNeverOversells() {
+        setSeats(rideId, 20);
+
+        RunResult result = run(this::reserveConditionally, 80);
+
+        assertEquals(0, result.errors);
+        assertEquals(20, result.reserved);
+        assertEquals(60, result.rejected);
+        assertSeatsConsistent(rideId, 20);
+    }
+
+    @Test
+    void lockAndRecountNeverOversells() {
+        setSeats(rideId, 20);
+
+        RunResult result = run(this::reserveWithLockAndRecount, 80);
+
+        // Lock waits may time out under contention, but no attempt may take a seat that isn't there
+        assertTrue(result.reserved <= 20);
+        assertSeatsConsistent(rideId, 20);
+    }
+
+    @Test
+    void compareReservationThroughput() {
+        int seats = THREADS * 50;
+
+        setSeats(rideId, seats);
+        RunResult locked = run(this::reserveWithLockAndRecount, seats);
+        assertSeatsConsistent(rideId, seats);
+
+        bookingRepository.deleteAll(bookingRepository.findByRideId(rideId));
+        setSeats(rideId, seats);
+        RunResult conditional = run(this::reserveConditionally, seats);
+        assertSeatsConsistent(rideId, seats);
+
+        assertEquals(seats, conditional.reserved);
+        log.info("Seat reservation, {} threads, {} seats on one ride", THREADS, seats);
+        log.info("  lock + recount:     {} attempts/s ({} reserved, {} errors)",
+                String.format("%8.0f", locked.attemptsPerSecond()), locked.reserved, locked.errors);
+        log.info("  conditional update: {} attempts/s ({} reserved, {} errors)",
+                String.format("%8.0f", conditional.attemptsPerSecond()), conditional.reserved, conditional.errors);
+    }
+
+    @Test
+    void concurrentCancellationsReleaseSeatsOnce() {
+        setSeats(rideId, 4);
+        Long bookingId = transactionTemplate.execute(status -> {
+            rideRepository.reserveSeats(rideId, 2);
+            return saveBooking(rideId, 2, BookingStatus.CONFIRMED);
+        });
+
+        List<Runnable> cancellations = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            cancellations.add(() -> bookingService.cancelBooking(bookingId, riderId));
+        }
+        int succeeded = runConcurrently(cancellations);
+
+        assertEquals(1, succeeded, "exactly one cancellation should apply");
+        assertEquals(BookingStatus.CANCELLED, bookingRepository.findById(bookingId).orElseThrow().getStatus());
+        assertEquals(4, rideRepository.findById(rideId).orElseThrow().getAvailableSeats());
+        assertSeatsConsistent(rideId, 4);
+    }
+
+    @Test
+    void cancelRacingConfirmKeepsSeatsConsistent() {
+        setSeats(rideId, 20);
+
+        for (int round = 0; round < 20; round++) {
+            Long bookingId = transactionTemplate.execute(status -> saveBooking(rideId, 1, BookingStatus.PENDING));
+
+            runConcurrently(List.of(
+                    () -> bookingService.updateBookingStatus(bookingId, driverId, BookingStatus.CONFIRMED),
+                    () -> bookingService.cancelBooking(bookingId, riderId)));
+
+            // Either order is legal, but a cancelled booking must not keep a seat and a confirmed one must hold one
+            BookingStatus finalStatus = bookingRepository.findById(bookingId).orElseThrow().getStatus();
+            assertTrue(finalStatus == BookingStatus.CONFIRMED || finalStatus == BookingStatus.CANCELLED,
+                    "unexpected status " + finalStatus);
+            assertSeatsConsistent(rideId, 20);
+        }
+    }
+
+    /**
+     * The booking path before reserveSeats: lock the ride row, recount confirmed seats, write the new count.
+     */
+    private boolean reserveWithLockAndRecount(Long rideId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Ride locked = rideRepository.findByIdWithLock(rideId).orElseThrow();
+            int confirmedSeats = bookingRepository.findByRideId(rideId).stream()
+                    .filter(b -> b.getStatus() == BookingStatus.CONFIRMED)
+                    .mapToInt(Booking::getSeatsBooked)
+                    .sum();
+            int availableSeats = locked.getTotalSeats() - confirmedSeats;
+            if (availableSeats < 1) {
+                return false;
+            }
+            locked.setAvailableSeats(availableSeats - 1);
+            rideRepository.save(locked);
+            saveConfirmedBooking(rideId);
+            return true;
+        }));
+    }
+
+    private boolean reserveConditionally(Long rideId) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (rideRepository.reserveSeats(rideId, 1) == 0) {
+                return false;
+            }
+            saveConfirmedBooking(rideId);
+            return true;
+        }));
+    }
+
+    private void saveConfirmedBooking(Long rideId) {
+        saveBooking(rideId, 1, BookingStatus.CONFIRMED);
+    }
+
+    private Long saveBooking(Long rideId, int seats, BookingStatus status) {
+        // References only, so neither path pays for loading the ride's booking list here
+        return bookingRepository.save(Booking.builder()
+                .ride(rideRepository.getReferenceById(rideId))
+                .rider(userRepository.getReferenceById(riderId))
+                .pickupLocation(locationRepository.getReferenceById(ride.getPickupLocationId()))
+                .dropoffLocation(locationRepository.getReferenceById(ride.getDestinationLocationId()))
+                .pickupTimeStart(ride.getDepartureTimeStart())
+                .pickupTimeEnd(ride.getDepartureTimeEnd())
+                .seatsBooked(seats)
+                .status(status)
+                .costForThisRider(new BigDecimal("2.50"))
+                .build()).getId();
+    }
+
+    /**
+     * Starts all tasks at once and waits for them.
+     *
+     * @return how many completed without throwing
+     */
+    private int runConcurrently(List<Runnable> tasks) {
+        AtomicInteger succeeded = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (Runnable task : tasks) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        task.run();
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        // Lost the race: already cancelled, or changed by the other request
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+            return succeeded.get();
+        } catch (Exception e) {
+            throw new RuntimeException("Concurrent run failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RunResult run(ReservationStrategy strategy, int attempts) {
+        AtomicInteger remaining = new AtomicInteger(attempts);
+        AtomicInteger reserved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    while (remaining.getAndDecrement() > 0) {
+                        try {
+                            if (strategy.reserveOneSeat(rideId)) {
+                                reserved.incrementAndGet();
+                            } else {
+                                rejected.incrementAndGet();
+                            }
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+            return new RunResult(reserved.get(), rejected.get(), errors.get(), System.nanoTime() - startedAt);
+        } catch (Exception e) {
+            throw new RuntimeException("Reservation run failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void setSeats(Long rideId, int seats) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Ride loaded = rideRepository.findById(rideId).orElseThrow();
+            loaded.setTotalSeats(seats);
+            loaded.setAvailableSeats(seats);
+            rideRepository.save(loaded);
+        });
+    }
+
+    private void assertSeatsConsistent(Long rideId, int totalSeats) {
+        Ride loaded = rideRepository.findById(rideId).orElseThrow();
+        int confirmedSeats = bookingRepository.findByRideId(rideId).stream()
+                .filter(b -> b.getStatus() == BookingStatus.CONFIRMED)
+                .mapToInt(Booking::getSeatsBooked)
+                .sum();
+        assertTrue(loaded.getAvailableSeats() >= 0, "availableSeats went negative");
+        assertEquals(totalSeats - confirmedSeats, loaded.getAvailableSeats());
+    }
+}
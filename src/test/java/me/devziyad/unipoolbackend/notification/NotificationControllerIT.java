@@ -1,9 +1,11 @@
 package me.devziyad.unipoolbackend.notification;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import me.devziyad.unipoolbackend.common.NotificationType;
 import me.devziyad.unipoolbackend.common.Role;
 import me.devziyad.unipoolbackend.notification.dto.CreateNotificationPreferenceRequest;
+import me.devziyad.unipoolbackend.notification.dto.NotificationMessage;
 import me.devziyad.unipoolbackend.notification.dto.NotificationPreferenceResponse;
 import me.devziyad.unipoolbackend.notification.dto.UpdateNotificationPreferenceRequest;
 import me.devziyad.unipoolbackend.util.TestUtils;
@@ -13,10 +15,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureRestTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.web.servlet.client.RestTestClient;
+import reactor.core.Disposable;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,6 +36,15 @@ public class NotificationControllerIT {
     @Autowired
     private RestTestClient restClient;
 
+    @Autowired
+    private NotificationStreamRegistry notificationStreamRegistry;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private NotificationRetention notificationRetention;
+
 
     private String userToken;
     private String otherUserToken;
@@ -314,6 +331,287 @@ public class NotificationControllerIT {
                 .isNotFound();
     }
 
+    @Test
+    void shouldStreamNotificationsAndUnreadCount() throws Exception {
+        Long userId = currentUserId();
+
+        List<ServerSentEvent<Object>> events = new CopyOnWriteArrayList<>();
+        Disposable stream = notificationStreamRegistry.open(userId).subscribe(events::add);
+        try {
+            byte[] sentBytes = restClient
+                    .post()
+                    .uri("/api/notifications/send")
+                    .header("Authorization", "Bearer " + userToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("title", "Hello", "message", "Streamed"))
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .returnResult()
+                    .getResponseBody();
+            Long notificationId = objectMapper.readTree(sentBytes).get("id").asLong();
+
+            restClient
+                    .post()
+                    .uri("/api/notifications/" + notificationId + "/read")
+                    .header("Authorization", "Bearer " + userToken)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+
+            // Opening count, the notification, the count after it and the count after reading it
+            assertEquals(4, events.size());
+            assertEquals(NotificationStreamRegistry.UNREAD_COUNT_EVENT, events.get(0).event());
+            assertEquals(Map.of("count", 0L), events.get(0).data());
+            assertEquals(NotificationStreamRegistry.NOTIFICATION_EVENT, events.get(1).event());
+            assertEquals(String.valueOf(notificationId), events.get(1).id());
+            assertEquals(Map.of("count", 1L), events.get(2).data());
+            assertEquals(Map.of("count", 0L), events.get(3).data());
+        } finally {
+            stream.dispose();
+        }
+    }
+
+    @Test
+    void shouldKeepUnreadCountAcrossReadAndReadAll() throws Exception {
+        Long firstId = null;
+        for (int i = 0; i < 3; i++) {
+            byte[] sentBytes = restClient
+                    .post()
+                    .uri("/api/notifications/send")
+                    .header("Authorization", "Bearer " + userToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("title", "Notice " + i, "message", "Unread"))
+                    .exchange()
+                    .expectStatus()
+                    .isOk()
+                    .expectBody()
+                    .returnResult()
+                    .getResponseBody();
+            if (firstId == null) {
+                firstId = objectMapper.readTree(sentBytes).get("id").asLong();
+            }
+        }
+        assertUnreadCount(3);
+
+        // Reading the same notification twice only lowers the count once
+        for (int i = 0; i < 2; i++) {
+            restClient
+                    .post()
+                    .uri("/api/notifications/" + firstId + "/read")
+                    .header("Authorization", "Bearer " + userToken)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+        assertUnreadCount(2);
+
+        restClient
+                .post()
+                .uri("/api/notifications/me/read-all")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        assertUnreadCount(0);
+
+        restClient
+                .get()
+                .uri("/api/notifications/me/unread")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
+    @Test
+    void shouldPageNotificationsNewestFirst() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            restClient
+                    .post()
+                    .uri("/api/notifications/send")
+                    .header("Authorization", "Bearer " + userToken)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(Map.of("title", "Notice " + i, "message", "Paged"))
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+        }
+
+        byte[] firstPage = restClient
+                .get()
+                .uri("/api/notifications/me?limit=2")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].title").isEqualTo("Notice 2")
+                .jsonPath("$[1].title").isEqualTo("Notice 1")
+                .returnResult()
+                .getResponseBody();
+        JsonNode last = objectMapper.readTree(firstPage).get(1);
+
+        restClient
+                .get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/notifications/me")
+                        .queryParam("limit", 2)
+                        .queryParam("beforeCreatedAt", last.get("createdAt").asText())
+                        .queryParam("beforeId", last.get("id").asLong())
+                        .build())
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].title").isEqualTo("Notice 0");
+
+        restClient
+                .get()
+                .uri("/api/notifications/me?limit=0")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void shouldDigestBurstsAndPurgeOldReadNotifications() throws Exception {
+        Long userId = currentUserId();
+        List<NotificationMessage> burst = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            burst.add(NotificationMessage.builder()
+                    .userId(userId)
+                    .title("Booking Confirmed")
+                    .body("Booking " + i)
+                    .type(NotificationType.BOOKING_CONFIRMED)
+                    .build());
+        }
+        notificationService.enqueueNotifications(burst);
+
+        restClient
+                .get()
+                .uri("/api/notifications/me")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].title").isEqualTo("Booking Confirmed (6)");
+        assertUnreadCount(1);
+
+        restClient
+                .post()
+                .uri("/api/notifications/me/read-all")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        assertTrue(notificationRetention.purgeReadNotifications(Instant.now().plusSeconds(1)) >= 1);
+
+        restClient
+                .get()
+                .uri("/api/notifications/me")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
+    @Test
+    void shouldDropNotificationsOfMutedTypes() throws Exception {
+        Long userId = currentUserId();
+        NotificationPreferenceResponse preference = createPreference(NotificationType.BOOKING_CONFIRMED, "Mute me");
+        UpdateNotificationPreferenceRequest mute = new UpdateNotificationPreferenceRequest();
+        mute.setEnabled(false);
+        restClient
+                .put()
+                .uri("/api/notifications/preferences/" + preference.getId())
+                .header("Authorization", "Bearer " + userToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(mute)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        notificationService.enqueueNotifications(List.of(
+                NotificationMessage.builder().userId(userId).title("Booking Confirmed").body("Muted")
+                        .type(NotificationType.BOOKING_CONFIRMED).build(),
+                NotificationMessage.builder().userId(userId).title("Booking Cancelled").body("Delivered")
+                        .type(NotificationType.BOOKING_CANCELLED).build()));
+
+        restClient
+                .get()
+                .uri("/api/notifications/me")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].title").isEqualTo("Booking Cancelled");
+
+        // Re-enabling takes effect for the next notification
+        UpdateNotificationPreferenceRequest unmute = new UpdateNotificationPreferenceRequest();
+        unmute.setEnabled(true);
+        restClient
+                .put()
+                .uri("/api/notifications/preferences/" + preference.getId())
+                .header("Authorization", "Bearer " + userToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(unmute)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        notificationService.enqueueNotification(userId, "Booking Confirmed", "Delivered", NotificationType.BOOKING_CONFIRMED);
+
+        restClient
+                .get()
+                .uri("/api/notifications/me")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].title").isEqualTo("Booking Confirmed");
+    }
+
+    private Long currentUserId() throws Exception {
+        byte[] meBytes = restClient
+                .get()
+                .uri("/api/users/me")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+        return objectMapper.readTree(meBytes).get("id").asLong();
+    }
+
+    private void assertUnreadCount(int expected) {
+        restClient
+                .get()
+                .uri("/api/notifications/me/unread-count")
+                .header("Authorization", "Bearer " + userToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.count").isEqualTo(expected);
+    }
+
     private NotificationPreferenceResponse createPreference(NotificationType type, String customText) throws Exception {
         CreateNotificationPreferenceRequest request = new CreateNotificationPreferenceRequest();
         request.setType(type);
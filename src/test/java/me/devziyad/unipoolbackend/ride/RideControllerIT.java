@@ -7,6 +7,7 @@ import me.devziyad.unipoolbackend.user.UserRepository;
 import me.devziyad.unipoolbackend.util.TestUtils;
 
 import static me.devziyad.unipoolbackend.util.TestUtils.instantNowPlusHours;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +31,9 @@ public class RideControllerIT {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RideSearchCache rideSearchCache;
+
     private String driverToken;
     private Long vehicleId;
     private Long pickupLocationId;
@@ -241,5 +245,251 @@ public class RideControllerIT {
                 .expectStatus()
                 .isForbidden();
     }
-}
 
+    @Test
+    void shouldReturnFullPageWhenRideJustOutsideRadius() {
+        // Created first so it sorts ahead by id: 2.01 km from the centre on a diagonal,
+        // which an equirectangular approximation lets through but the great-circle test rejects
+        Long outsideRideId = createRideAt("Just outside", 12.012782, 30.013068, 12.3, 30.3, 300);
+        Long insideRideId = createRideAt("Centre", 12.0, 30.0, 12.3, 30.3, 302);
+
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = new me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest();
+        request.setPickupLatitude(12.0);
+        request.setPickupLongitude(30.0);
+        request.setPickupRadiusKm(2.0);
+        request.setPage(0);
+        request.setLimit(1);
+
+        restClient
+                .post()
+                .uri("/api/rides/search")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].rideId").isEqualTo(insideRideId.intValue())
+                .jsonPath("$[?(@.rideId == " + outsideRideId + ")]").doesNotExist();
+    }
+
+    @Test
+    void shouldRejectSearchPageBeyondMaximum() {
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = new me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest();
+        request.setSortBy("distance");
+        request.setPage(101);
+        request.setLimit(100);
+
+        restClient
+                .post()
+                .uri("/api/rides/search")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void shouldRefreshLaterPagesWhenRideLeavesCachedPage() {
+        Long firstRideId = createRideAt("Page one", 13.0, 31.0, 13.3, 31.3, 310);
+        Long secondRideId = createRideAt("Page two", 13.001, 31.001, 13.3, 31.3, 312);
+        Long thirdRideId = createRideAt("Page three", 13.002, 31.002, 13.3, 31.3, 314);
+
+        // Cache the first two pages
+        searchPage(13.0, 31.0, 0).jsonPath("$[0].rideId").isEqualTo(firstRideId.intValue());
+        searchPage(13.0, 31.0, 1).jsonPath("$[0].rideId").isEqualTo(secondRideId.intValue());
+
+        RideController.UpdateStatusRequest cancel = new RideController.UpdateStatusRequest();
+        cancel.setStatus(RideStatus.CANCELLED);
+        restClient
+                .patch()
+                .uri("/api/rides/" + firstRideId + "/status")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cancel)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // Only page 0 held the cancelled ride, but page 1 shifted too
+        searchPage(13.0, 31.0, 0).jsonPath("$[0].rideId").isEqualTo(secondRideId.intValue());
+        searchPage(13.0, 31.0, 1).jsonPath("$[0].rideId").isEqualTo(thirdRideId.intValue());
+    }
+
+    @Test
+    void shouldFindRideThroughSpatialIndexAndFullQueryFallback() {
+        Long nearbyRideId = createRideAt("Indexed", 14.0, 32.0, 14.3, 32.3, 320);
+
+        // A 2 km circle covers a handful of grid cells, so the index supplies the candidates
+        search(searchAround(14.0, 32.0, 2.0))
+                .jsonPath("$[?(@.rideId == " + nearbyRideId + ")]").exists();
+
+        // A 500 km circle covers too many cells and the query runs without the index
+        search(searchAround(14.0, 32.0, 500.0))
+                .jsonPath("$[?(@.rideId == " + nearbyRideId + ")]").exists();
+    }
+
+    @Test
+    void shouldSortAndPageSearchInDatabase() {
+        Long latestRideId = createRideAt("Latest", 15.0, 33.0, 15.3, 33.3, 334);
+        Long earliestRideId = createRideAt("Earliest", 15.0, 33.0, 15.3, 33.3, 330);
+        Long middleRideId = createRideAt("Middle", 15.0, 33.0, 15.3, 33.3, 332);
+
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = searchAround(15.0, 33.0, 1.0);
+        request.setSortBy("departureTime");
+        request.setLimit(2);
+
+        request.setPage(0);
+        search(request)
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].rideId").isEqualTo(earliestRideId.intValue())
+                .jsonPath("$[1].rideId").isEqualTo(middleRideId.intValue());
+
+        request.setPage(1);
+        search(request)
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].rideId").isEqualTo(latestRideId.intValue());
+    }
+
+    @Test
+    void shouldOmitBookingsFromSummarySearch() {
+        createRideAt("Summary", 16.0, 34.0, 16.3, 34.3, 340);
+
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = searchAround(16.0, 34.0, 1.0);
+        search(request)
+                .jsonPath("$[0].bookings").isArray();
+
+        request.setSummary(true);
+        search(request)
+                .jsonPath("$[0].rideId").exists()
+                .jsonPath("$[0].bookings").doesNotExist();
+    }
+
+    @Test
+    void shouldKeepSortOrderInSummarySearch() {
+        Long laterRideId = createRideAt("Later summary", 21.0, 39.0, 21.3, 39.3, 392);
+        Long earlierRideId = createRideAt("Earlier summary", 21.0, 39.0, 21.3, 39.3, 390);
+
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = searchAround(21.0, 39.0, 1.0);
+        request.setSortBy("departureTime");
+        request.setSummary(true);
+
+        search(request)
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].rideId").isEqualTo(earlierRideId.intValue())
+                .jsonPath("$[0].driverName").exists()
+                .jsonPath("$[0].pickupLatitude").isEqualTo(21.0)
+                .jsonPath("$[1].rideId").isEqualTo(laterRideId.intValue())
+                .jsonPath("$[1].bookings").doesNotExist();
+    }
+
+    @Test
+    void shouldRankSearchByDistance() {
+        // Lower id and earlier departure, but 4.5 km from the requested pickup;
+        // one hour of departure gap only costs 2 km, so the closer ride ranks first
+        Long fartherRideId = createRideAt("Farther", 18.0405, 36.0, 18.3, 36.3, 350);
+        Long closerRideId = createRideAt("Closer", 18.0, 36.0, 18.3, 36.3, 351);
+
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = searchAround(18.0, 36.0, 5.0);
+        request.setSortBy("distance");
+
+        search(request)
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].rideId").isEqualTo(closerRideId.intValue())
+                .jsonPath("$[1].rideId").isEqualTo(fartherRideId.intValue());
+    }
+
+    @Test
+    void shouldServeRepeatedSearchFromCache() {
+        Long cachedRideId = createRideAt("Cached", 19.0, 37.0, 19.3, 37.3, 360);
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = searchAround(19.0, 37.0, 1.0);
+
+        search(request).jsonPath("$[0].rideId").isEqualTo(cachedRideId.intValue());
+        long hitsBefore = rideSearchCache.stats().getHits();
+        search(request).jsonPath("$[0].rideId").isEqualTo(cachedRideId.intValue());
+        assertEquals(hitsBefore + 1, rideSearchCache.stats().getHits(), "repeated search should be a cache hit");
+
+        // A new matching ride invalidates the cached entry
+        Long newRideId = createRideAt("Uncached", 19.0, 37.0, 19.3, 37.3, 362);
+        search(request)
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].rideId").isEqualTo(newRideId.intValue());
+    }
+
+    @Test
+    void shouldNotServeCachedSearchToNearbyCenter() {
+        Long rideId = createRideAt("Edge", 20.0, 38.0, 20.3, 38.3, 380);
+
+        // 0.967 km from the ride: inside the 1 km radius
+        search(searchAround(20.0087, 38.0, 1.0))
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].rideId").isEqualTo(rideId.intValue());
+        // 78 m further: 1.045 km away, so the ride must not come back from the first search's entry
+        search(searchAround(20.0094, 38.0, 1.0))
+                .jsonPath("$.length()").isEqualTo(0);
+    }
+
+    @Test
+    void shouldMatchCorridorSearchOnlyInDirectionOfTravel() {
+        // Northbound along a straight arterial road
+        Long corridorRideId = createRideAt("Corridor", 41.80, -87.6846, 41.90, -87.6870, 370);
+
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = new me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest();
+        request.setPickupLatitude(41.82);
+        request.setPickupLongitude(-87.685);
+        request.setDestinationLatitude(41.88);
+        request.setDestinationLongitude(-87.686);
+        request.setCorridorRadiusMeters(2000);
+
+        search(request)
+                .jsonPath("$[?(@.rideId == " + corridorRideId + ")]").exists();
+
+        // Same points, opposite direction
+        request.setPickupLatitude(41.88);
+        request.setPickupLongitude(-87.686);
+        request.setDestinationLatitude(41.82);
+        request.setDestinationLongitude(-87.685);
+
+        search(request)
+                .jsonPath("$[?(@.rideId == " + corridorRideId + ")]").doesNotExist();
+    }
+
+    private me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest searchAround(double lat, double lon, double radiusKm) {
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = new me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest();
+        request.setPickupLatitude(lat);
+        request.setPickupLongitude(lon);
+        request.setPickupRadiusKm(radiusKm);
+        return request;
+    }
+
+    private RestTestClient.BodyContentSpec search(me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request) {
+        return restClient
+                .post()
+                .uri("/api/rides/search")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody();
+    }
+
+    private RestTestClient.BodyContentSpec searchPage(double lat, double lon, int page) {
+        me.devziyad.unipoolbackend.ride.dto.SearchRidesRequest request = searchAround(lat, lon, 1.0);
+        request.setPage(page);
+        request.setLimit(1);
+        return search(request).jsonPath("$.length()").isEqualTo(1);
+    }
+
+    private Long createRideAt(String label, double pickupLat, double pickupLon,
+                              double destinationLat, double destinationLon, long hoursOffset) {
+        Long pickupId = TestUtils.createLocation(restClient, driverToken, label + " pickup", pickupLat, pickupLon).getId();
+        Long destinationId = TestUtils.createLocation(restClient, driverToken, label + " destination", destinationLat, destinationLon).getId();
+        return TestUtils.createRide(restClient, driverToken, vehicleId, pickupId, destinationId, hoursOffset).getRideId();
+    }
+}
@@ -0,0 +1,470 @@
+package me.devziyad.unipoolbackend.tracking;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import me.devziyad.unipoolbackend.booking.Booking;
+import me.devziyad.unipoolbackend.booking.BookingRepository;
+import me.devziyad.unipoolbackend.common.BookingStatus;
+import me.devziyad.unipoolbackend.common.Role;
+import me.devziyad.unipoolbackend.exception.ForbiddenException;
+import me.devziyad.unipoolbackend.location.dto.LocationResponse;
+import me.devziyad.unipoolbackend.tracking.dto.GpsLocationResponse;
+import me.devziyad.unipoolbackend.user.UserRepository;
+import me.devziyad.unipoolbackend.util.TestUtils;
+import me.devziyad.unipoolbackend.vehicle.dto.VehicleResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.resttestclient.autoconfigure.AutoConfigureRestTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.servlet.client.RestTestClient;
+import reactor.core.Disposable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@AutoConfigureRestTestClient
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@org.springframework.test.context.ActiveProfiles("test")
+public class GpsTrackingControllerIT {
+
+    @Autowired
+    private RestTestClient restClient;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private GpsTrackingRepository trackingRepository;
+
+    @Autowired
+    private LiveLocationStore liveLocationStore;
+
+    @Autowired
+    private GpsTrackingService trackingService;
+
+    @Autowired
+    private TraceRecorder traceRecorder;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private String driverToken;
+    private String riderToken;
+    private Long driverId;
+    private Long riderId;
+    private Long rideId;
+
+    @BeforeEach
+    void setUp() {
+        TestUtils.RegistrationResult driverResult = TestUtils.registerAndGetResult(
+                restClient,
+                "tracking-driver@example.com",
+                "driver123",
+                "Tracking Driver",
+                Role.DRIVER
+        );
+        driverToken = driverResult.getToken();
+        TestUtils.verifyDriverByEmailDirectly(userRepository, driverResult.getEmail());
+        driverId = userRepository.findByEmail(driverResult.getEmail()).orElseThrow().getId();
+
+        riderToken = TestUtils.registerAndGetToken(
+                restClient,
+                "tracking-rider@example.com",
+                "rider123",
+                "Tracking Rider",
+                Role.RIDER
+        );
+        riderId = userRepository.findByEmail("tracking-rider@example.com").orElseThrow().getId();
+
+        VehicleResponse vehicle = TestUtils.createVehicle(restClient, driverToken);
+        LocationResponse pickup = TestUtils.createLocation(restClient, driverToken, "Pickup", 40.7128, -74.0060);
+        LocationResponse destination = TestUtils.createLocation(restClient, driverToken, "Destination", 40.7589, -73.9851);
+        rideId = TestUtils.createRide(restClient, driverToken, vehicle.getId(), pickup.getId(), destination.getId())
+                .getRideId();
+    }
+
+    @Test
+    void shouldServeLivePositionAndWriteItBehind() {
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/start")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        ping(40.7300, -73.9950);
+
+        // Served from memory before anything is written
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId)
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.latitude").isEqualTo(40.7300)
+                .jsonPath("$.longitude").isEqualTo(-73.9950)
+                .jsonPath("$.isActive").isEqualTo(true);
+
+        liveLocationStore.flush();
+        GpsTracking stored = trackingRepository.findByRideId(rideId).orElseThrow();
+        assertEquals(40.7300, stored.getLatitude());
+        assertEquals(-73.9950, stored.getLongitude());
+        assertTrue(stored.getIsActive());
+
+        ping(40.7400, -73.9900);
+        liveLocationStore.flush();
+        assertEquals(40.7400, trackingRepository.findByRideId(rideId).orElseThrow().getLatitude());
+    }
+
+    @Test
+    void shouldRejectPingFromOtherUser() {
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/update")
+                .header("Authorization", "Bearer " + riderToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("latitude", 40.73, "longitude", -73.99))
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/update")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("latitude", 95.0, "longitude", -73.99))
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void shouldReplayTraceAcrossSealedAndPendingPoints() throws Exception {
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/start")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        ping(40.7300, -73.9950);
+        ping(40.7310, -73.9940);
+        // Stopping seals the first two points into a chunk; the third stays buffered
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/stop")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        ping(40.7320, -73.9930);
+
+        String body = restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/trace")
+                .header("Authorization", "Bearer " + driverToken)
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        JsonNode points = TestUtils.getObjectMapper().readTree(body);
+        assertEquals(3, points.size());
+        assertEquals(40.7300, points.get(0).get("latitude").asDouble());
+        assertEquals(-73.9940, points.get(1).get("longitude").asDouble());
+        assertEquals(40.7320, points.get(2).get("latitude").asDouble());
+        assertNotNull(points.get(2).get("timestamp"));
+
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/trace/stats")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.chunks").isEqualTo(1)
+                .jsonPath("$.points").isEqualTo(2);
+
+        // Riders without a booking on the ride can't see where it went
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/trace")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+    }
+
+    @Test
+    void shouldPushPositionsToFollowers() {
+        List<ServerSentEvent<Object>> events = new CopyOnWriteArrayList<>();
+        Disposable stream = trackingService.openLocationStream(rideId, driverId).subscribe(events::add);
+        try {
+            restClient
+                    .post()
+                    .uri("/api/tracking/" + rideId + "/start")
+                    .header("Authorization", "Bearer " + driverToken)
+                    .exchange()
+                    .expectStatus()
+                    .isOk();
+            ping(40.7300, -73.9950);
+            ping(40.7310, -73.9940);
+
+            // Nothing tracked when the stream opened, so no initial position
+            assertEquals(3, events.size());
+            events.forEach(event -> assertEquals(RideLocationStreamRegistry.LOCATION_EVENT, event.event()));
+            assertTrue(((GpsLocationResponse) events.get(0).data()).getIsActive());
+            assertEquals(40.7310, ((GpsLocationResponse) events.get(2).data()).getLatitude());
+        } finally {
+            stream.dispose();
+        }
+
+        // A later follower starts from the current position
+        List<ServerSentEvent<Object>> late = new CopyOnWriteArrayList<>();
+        Disposable lateStream = trackingService.openLocationStream(rideId, driverId).subscribe(late::add);
+        try {
+            assertEquals(1, late.size());
+            assertEquals(-73.9940, ((GpsLocationResponse) late.get(0).data()).getLongitude());
+        } finally {
+            lateStream.dispose();
+        }
+
+        // Riders without a confirmed booking can't follow the ride
+        assertThrows(ForbiddenException.class, () -> trackingService.openLocationStream(rideId, riderId));
+    }
+
+    @Test
+    void shouldIngestBatchDroppingOutOfOrderPoints() throws Exception {
+        Instant start = Instant.now().minusSeconds(60);
+        List<Map<String, Object>> points = List.of(
+                point(40.7300, -73.9950, start),
+                point(40.7305, -73.9945, start.plusSeconds(5)),
+                // Duplicate and out of order
+                point(40.7305, -73.9945, start.plusSeconds(5)),
+                point(40.7290, -73.9960, start.plusSeconds(3)),
+                point(40.7310, -73.9940, start.plusSeconds(10)),
+                // Too far in the future
+                point(40.7400, -73.9900, Instant.now().plusSeconds(3600))
+        );
+
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/update/batch")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("points", points))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.accepted").isEqualTo(3)
+                .jsonPath("$.dropped").isEqualTo(3)
+                .jsonPath("$.current.latitude").isEqualTo(40.7310);
+
+        String body = restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/trace")
+                .header("Authorization", "Bearer " + driverToken)
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        JsonNode trace = TestUtils.getObjectMapper().readTree(body);
+        assertEquals(3, trace.size());
+        assertEquals(40.7305, trace.get(1).get("latitude").asDouble());
+
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/update/batch")
+                .header("Authorization", "Bearer " + riderToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("points", points))
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+    }
+
+    @Test
+    void shouldKeepLivePingsAfterBatchFromFastDeviceClock() throws Exception {
+        // Device clock 20 s ahead of the server: within the allowed skew
+        Instant deviceNow = Instant.now().plusSeconds(20);
+        uploadBatch(List.of(
+                point(40.7300, -73.9950, deviceNow.minusSeconds(10)),
+                point(40.7305, -73.9945, deviceNow)))
+                .jsonPath("$.accepted").isEqualTo(2);
+        ping(40.7310, -73.9940);
+
+        String body = restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/trace")
+                .header("Authorization", "Bearer " + driverToken)
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        JsonNode trace = TestUtils.getObjectMapper().readTree(body);
+        assertEquals(3, trace.size());
+        assertEquals(40.7310, trace.get(2).get("latitude").asDouble());
+        // The batch keeps its spacing, shifted back onto the server clock
+        Instant first = Instant.parse(trace.get(0).get("timestamp").asText());
+        Instant second = Instant.parse(trace.get(1).get("timestamp").asText());
+        assertEquals(10_000, second.toEpochMilli() - first.toEpochMilli());
+        assertTrue(second.isBefore(Instant.parse(trace.get(2).get("timestamp").asText())));
+    }
+
+    @Test
+    void shouldDropResentBatchAfterTraceWasSealed() throws Exception {
+        Instant start = Instant.now().minusSeconds(60);
+        List<Map<String, Object>> points = List.of(
+                point(40.7300, -73.9950, start),
+                point(40.7305, -73.9945, start.plusSeconds(5)),
+                point(40.7310, -73.9940, start.plusSeconds(10))
+        );
+        uploadBatch(points)
+                .jsonPath("$.accepted").isEqualTo(3)
+                .jsonPath("$.dropped").isEqualTo(0);
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/stop")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+        // The sealed ride's buffer is gone, as after a restart
+        traceRecorder.clear();
+
+        // A device retrying the same upload must not append the points again
+        uploadBatch(points)
+                .jsonPath("$.accepted").isEqualTo(0)
+                .jsonPath("$.dropped").isEqualTo(3);
+
+        String body = restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/trace")
+                .header("Authorization", "Bearer " + driverToken)
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        assertEquals(3, TestUtils.getObjectMapper().readTree(body).size());
+    }
+
+    @Test
+    void shouldEstimateArrivalAlongRoute() throws Exception {
+        // No position yet
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/eta")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+
+        ping(40.7128, -74.0060);
+        JsonNode atStart = eta();
+        ping(40.7360, -73.9955);
+        JsonNode halfway = eta();
+
+        assertTrue(halfway.get("remainingKm").asDouble() < atStart.get("remainingKm").asDouble());
+        assertTrue(halfway.get("minutesToDestination").asInt() <= atStart.get("minutesToDestination").asInt());
+        assertEquals(40.7360, halfway.get("latitude").asDouble());
+
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/eta")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+
+        // A booking the driver has not confirmed doesn't reveal where the ride is
+        Booking booking = bookingRepository.findById(TestUtils.createBooking(restClient, riderToken, rideId, 1))
+                .orElseThrow();
+        booking.setStatus(BookingStatus.PENDING);
+        bookingRepository.save(booking);
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/eta")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isForbidden();
+
+        booking.setStatus(BookingStatus.CONFIRMED);
+        bookingRepository.save(booking);
+        restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/eta")
+                .header("Authorization", "Bearer " + riderToken)
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+
+    private JsonNode eta() throws Exception {
+        String body = restClient
+                .get()
+                .uri("/api/tracking/" + rideId + "/eta")
+                .header("Authorization", "Bearer " + driverToken)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+        return TestUtils.getObjectMapper().readTree(body);
+    }
+
+    private RestTestClient.BodyContentSpec uploadBatch(List<Map<String, Object>> points) {
+        return restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/update/batch")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("points", points))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody();
+    }
+
+    private static Map<String, Object> point(double latitude, double longitude, Instant timestamp) {
+        return Map.of("latitude", latitude, "longitude", longitude, "timestamp", timestamp.toString());
+    }
+
+    private void ping(double latitude, double longitude) {
+        restClient
+                .post()
+                .uri("/api/tracking/" + rideId + "/update")
+                .header("Authorization", "Bearer " + driverToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("latitude", latitude, "longitude", longitude))
+                .exchange()
+                .expectStatus()
+                .isOk();
+    }
+}
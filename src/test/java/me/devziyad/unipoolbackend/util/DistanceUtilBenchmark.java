@@ -0,0 +1,121 @@
+package me.devziyad.unipoolbackend.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Radius filtering over N points: the per-call {@link DistanceUtil#isWithinRadius} path on boxed
+ * coordinates against the primitive batch {@link DistanceUtil#haversineDistances}, and against the
+ * bounding-box prefiltered {@link DistanceUtil#distancesWithinRadius} that distance-ranked search uses.
+ *
+ * Not part of the test suite; run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=me.devziyad.unipoolbackend.util.DistanceUtilBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceUtilBenchmark {
+
+    // Campus-sized spread around a city center; a 5 km radius keeps a few percent of the points
+    private static final double CENTER_LAT = 26.2285;
+    private static final double CENTER_LON = 50.5860;
+    private static final double SPREAD_DEGREES = 0.5;
+    private static final double RADIUS_KM = 5.0;
+
+    @Param({"10000", "100000"})
+    private int points;
+
+    private List<Point> boxed;
+    private double[] lats;
+    private double[] lons;
+    private double[] distances;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        boxed = new ArrayList<>(points);
+        lats = new double[points];
+        lons = new double[points];
+        distances = new double[points];
+        for (int i = 0; i < points; i++) {
+            lats[i] = CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD_DEGREES;
+            lons[i] = CENTER_LON + (random.nextDouble() - 0.5) * SPREAD_DEGREES;
+            boxed.add(new Point(lats[i], lons[i]));
+        }
+    }
+
+    @Benchmark
+    public void perCallBoxed(Blackhole blackhole) {
+        int count = 0;
+        for (Point point : boxed) {
+            if (DistanceUtil.isWithinRadius(CENTER_LAT, CENTER_LON, point.getLatitude(), point.getLongitude(), RADIUS_KM)) {
+                count++;
+            }
+        }
+        blackhole.consume(count);
+    }
+
+    @Benchmark
+    public void batch(Blackhole blackhole) {
+        DistanceUtil.haversineDistances(CENTER_LAT, CENTER_LON, lats, lons, distances);
+        int count = 0;
+        for (double distance : distances) {
+            if (distance <= RADIUS_KM) {
+                count++;
+            }
+        }
+        blackhole.consume(count);
+    }
+
+    @Benchmark
+    public void prefiltered(Blackhole blackhole) {
+        blackhole.consume(DistanceUtil.distancesWithinRadius(CENTER_LAT, CENTER_LON, lats, lons, RADIUS_KM, distances));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(DistanceUtilBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    private static final class Point {
+        private final Double latitude;
+        private final Double longitude;
+
+        private Point(Double latitude, Double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        Double getLatitude() {
+            return latitude;
+        }
+
+        Double getLongitude() {
+            return longitude;
+        }
+    }
+}
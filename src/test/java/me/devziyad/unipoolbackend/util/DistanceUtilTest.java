@@ -0,0 +1,78 @@
+package me.devziyad.unipoolbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistanceUtilTest {
+
+    // One degree along a meridian on a 6371 km sphere
+    private static final double KM_PER_DEGREE = 6371.0 * Math.PI / 180.0;
+
+    @Test
+    void shouldMeasureShortDistanceAcrossAntimeridian() {
+        double distance = DistanceUtil.haversineDistance(0.0, 179.995, 0.0, -179.995);
+
+        assertEquals(0.01 * KM_PER_DEGREE, distance, 1e-6);
+        assertTrue(DistanceUtil.isWithinRadius(0.0, 179.995, 0.0, -179.995, 1.2));
+    }
+
+    @Test
+    void shouldMeasureShortDistanceOverPole() {
+        // Opposite meridians, each 0.001 degrees from the north pole
+        double distance = DistanceUtil.haversineDistance(89.999, 0.0, 89.999, 180.0);
+
+        assertEquals(0.002 * KM_PER_DEGREE, distance, 1e-6);
+        assertTrue(DistanceUtil.isWithinRadius(89.999, 0.0, 89.999, 180.0, 0.25));
+    }
+
+    @Test
+    void shouldIncludePointOnRadiusAndExcludePointJustBeyond() {
+        assertTrue(DistanceUtil.isWithinRadius(0.0, 0.0, 1.0, 0.0, KM_PER_DEGREE + 1e-9));
+        assertFalse(DistanceUtil.isWithinRadius(0.0, 0.0, 1.0, 0.0, KM_PER_DEGREE - 1e-6));
+    }
+
+    @Test
+    void shouldMatchPerCallDistancesInBatch() {
+        double[] lats = {0.0, 0.0, 89.999, 26.2285, -45.0, 12.012782};
+        double[] lons = {-179.995, 179.995, 180.0, 50.5860, 120.0, 30.013068};
+        double[] out = new double[lats.length];
+
+        DistanceUtil.haversineDistances(0.0, 179.995, lats, lons, out);
+        for (int i = 0; i < lats.length; i++) {
+            assertEquals(DistanceUtil.haversineDistance(0.0, 179.995, lats[i], lons[i]), out[i], 1e-9);
+        }
+
+        DistanceUtil.haversineDistances(89.999, 0.0, lats, lons, out);
+        for (int i = 0; i < lats.length; i++) {
+            assertEquals(DistanceUtil.haversineDistance(89.999, 0.0, lats[i], lons[i]), out[i], 1e-9);
+        }
+    }
+
+    @Test
+    void shouldPrefilterToSamePointsAsPerCallRadiusTest() {
+        double[] lats = {0.0, 0.0, 1.0, 1.0, 89.999, 89.999, 26.2285, -45.0};
+        double[] lons = {-179.995, 179.0, 0.0, 179.995, 180.0, 90.0, 50.5860, 120.0};
+        double[] out = new double[lats.length];
+        double[][] origins = {{0.0, 179.995}, {89.999, 0.0}, {0.0, 0.0}};
+
+        for (double[] origin : origins) {
+            for (double radiusKm : new double[]{0.5, KM_PER_DEGREE + 1e-9, 200.0}) {
+                int count = DistanceUtil.distancesWithinRadius(origin[0], origin[1], lats, lons, radiusKm, out);
+                int expected = 0;
+                for (int i = 0; i < lats.length; i++) {
+                    double distance = DistanceUtil.haversineDistance(origin[0], origin[1], lats[i], lons[i]);
+                    if (distance <= radiusKm) {
+                        expected++;
+                        assertEquals(distance, out[i], 1e-9);
+                    } else {
+                        assertEquals(Double.POSITIVE_INFINITY, out[i]);
+                    }
+                }
+                assertEquals(expected, count);
+            }
+        }
+    }
+}